@@ -0,0 +1,108 @@
+package homework1.benchmark;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.CustomerDao;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.dao.CustomerUtils;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.NoopJournal;
+import homework1.domain.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountDaoBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    private AccountDao accountDao;
+    private Customer customer;
+    private String[] numbers;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        NoopJournal journal = new NoopJournal();
+        ReadLogSampler readLogSampler = new ReadLogSampler(1);
+        StoreVersion storeVersion = new StoreVersion();
+        TransactionHistory transactionHistory = new TransactionHistory(256, 64, Duration.ofDays(90));
+        AccountSnapshots snapshots = new AccountSnapshots();
+        CustomerDao customerDao = new CustomerDao(journal, readLogSampler, storeVersion);
+        accountDao = new AccountDao(metrics, new AccountLocks(metrics), journal, readLogSampler, snapshots, storeVersion, transactionHistory, 16);
+        CustomerUtils.seedDefaults(customerDao, accountDao);
+        customer = customerDao.save(new Customer("Bench Customer", "bench@example.com", 30));
+
+        List<Account> batch = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            batch.add(new Account(Currency.values()[i % Currency.values().length], null));
+        }
+        accountDao.saveAll(batch);
+
+        numbers = new String[accounts];
+        ids = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = batch.get(i).getNumber();
+            ids[i] = batch.get(i).getId();
+        }
+    }
+
+    @Benchmark
+    public Account findByNumber() {
+        return accountDao.findByNumber(numbers[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public Account getById() {
+        return accountDao.getById(ids[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Account findByNumberContended() {
+        return accountDao.findByNumber(numbers[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public boolean saveAndDelete() {
+        Account account = accountDao.save(new Account(Currency.USD, customer));
+        return accountDao.delete(account);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean saveAndDeleteContended() {
+        Account account = accountDao.save(new Account(Currency.USD, customer));
+        return accountDao.delete(account);
+    }
+}
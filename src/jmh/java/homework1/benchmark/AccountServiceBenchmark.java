@@ -0,0 +1,133 @@
+package homework1.benchmark;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.CustomerDao;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.dao.CustomerUtils;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.ledger.LedgerRing;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.NoopJournal;
+import homework1.service.DefaultAccountService;
+import homework1.service.FxRates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// "Spread" variants pick random accounts out of the whole book, so concurrent threads
+// rarely meet on a lock; "Hot" variants make every thread hit the same two accounts.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    private DefaultAccountService accountService;
+    private String[] numbers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        NoopJournal journal = new NoopJournal();
+        ReadLogSampler readLogSampler = new ReadLogSampler(1);
+        StoreVersion storeVersion = new StoreVersion();
+        TransactionHistory transactionHistory = new TransactionHistory(256, 64, Duration.ofDays(90));
+        AccountSnapshots snapshots = new AccountSnapshots();
+        CustomerDao customerDao = new CustomerDao(journal, readLogSampler, storeVersion);
+        AccountLocks accountLocks = new AccountLocks(metrics);
+        AccountDao accountDao = new AccountDao(metrics, accountLocks, journal, readLogSampler, snapshots, storeVersion, transactionHistory, 16);
+        CustomerUtils.seedDefaults(customerDao, accountDao);
+        LedgerRing ledger = new LedgerRing(1 << 16, LedgerRing.Backpressure.DROP, event -> { }, metrics);
+        ledger.start();
+        accountService = new DefaultAccountService(accountDao, accountLocks, metrics, journal, ledger, snapshots, new FxRates("fx-rates.csv"), transactionHistory, Runnable::run);
+
+        List<Account> batch = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            Account account = new Account(Currency.USD, null);
+            account.setBalanceMinorUnits(1_000_000_000L);
+            batch.add(account);
+        }
+        accountDao.saveAll(batch);
+
+        numbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = batch.get(i).getNumber();
+        }
+    }
+
+    private String randomNumber() {
+        return numbers[ThreadLocalRandom.current().nextInt(accounts)];
+    }
+
+    @Benchmark
+    public Account deposit() {
+        return accountService.deposit(randomNumber(), AMOUNT, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Account depositSpread() {
+        return accountService.deposit(randomNumber(), AMOUNT, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Account depositHot() {
+        return accountService.deposit(numbers[0], AMOUNT, null);
+    }
+
+    @Benchmark
+    public void transfer() {
+        int from = ThreadLocalRandom.current().nextInt(accounts);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+        accountService.transfer(numbers[from], numbers[to], AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferSpread() {
+        int from = ThreadLocalRandom.current().nextInt(accounts);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+        accountService.transfer(numbers[from], numbers[to], AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferHot() {
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            accountService.transfer(numbers[0], numbers[1], AMOUNT);
+        } else {
+            accountService.transfer(numbers[1], numbers[0], AMOUNT);
+        }
+    }
+}
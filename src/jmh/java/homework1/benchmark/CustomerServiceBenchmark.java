@@ -0,0 +1,99 @@
+package homework1.benchmark;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.CustomerDao;
+import homework1.dao.CustomerLocks;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.dao.CustomerUtils;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.NoopJournal;
+import homework1.domain.Customer;
+import homework1.service.DefaultCustomerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Customer reads used to pay for assignAccountsToCustomers on every request; these
+// measure what GET /customers and GET /customers/{id} cost now that links are maintained
+// incrementally.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int customers;
+
+    private DefaultCustomerService customerService;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        NoopJournal journal = new NoopJournal();
+        ReadLogSampler readLogSampler = new ReadLogSampler(1);
+        StoreVersion storeVersion = new StoreVersion();
+        TransactionHistory transactionHistory = new TransactionHistory(256, 64, Duration.ofDays(90));
+        AccountSnapshots snapshots = new AccountSnapshots();
+        CustomerDao customerDao = new CustomerDao(journal, readLogSampler, storeVersion);
+        AccountDao accountDao = new AccountDao(metrics, new AccountLocks(metrics), journal, readLogSampler, snapshots, storeVersion, transactionHistory, 16);
+        CustomerUtils.seedDefaults(customerDao, accountDao);
+        customerService = new DefaultCustomerService(customerDao, accountDao, new CustomerLocks(), journal);
+
+        List<Customer> batch = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            batch.add(new Customer("Customer " + i, "customer" + i + "@example.com", 20 + i % 50));
+        }
+        customerDao.saveAll(batch);
+        firstId = batch.get(0).getId();
+
+        List<Account> accounts = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            accounts.add(new Account(Currency.values()[i % Currency.values().length], batch.get(i)));
+        }
+        accountDao.saveAll(accounts);
+    }
+
+    @Benchmark
+    public void findAllWithAccounts(Blackhole blackhole) {
+        for (Customer customer : customerService.findAll()) {
+            blackhole.consume(customer.getAccounts().size());
+        }
+    }
+
+    @Benchmark
+    public int getByIdWithAccounts() {
+        return customerService.getById(firstId + ThreadLocalRandom.current().nextInt(customers)).getAccounts().size();
+    }
+
+    @Benchmark
+    public void firstPage(Blackhole blackhole) {
+        blackhole.consume(customerService.findPage(null, 100));
+    }
+}
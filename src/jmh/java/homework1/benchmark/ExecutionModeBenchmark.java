@@ -0,0 +1,188 @@
+package homework1.benchmark;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.CustomerDao;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.domain.Customer;
+import homework1.ledger.LedgerRing;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.Journal;
+import homework1.service.DefaultAccountService;
+import homework1.service.FxRates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Platform vs virtual request threads under a burst of concurrent transfers. Each
+// transfer waits for a simulated durable commit outside the account locks, as it does
+// with bank.persistence.sync, which is where a bounded pool starts queueing. The
+// platform pool matches Tomcat's default of 200 threads. The score is the time to
+// drain one burst; per-request p50/p99 is printed at the end of each trial.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionModeBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+    private static final int ACCOUNTS = 10_000;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"10000"})
+    public int concurrency;
+
+    @Param({"1000"})
+    public long commitMicros;
+
+    private ExecutorService executor;
+    private DefaultAccountService accountService;
+    private String[] numbers;
+    private long[] latencies;
+    private int recorded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        Journal journal = new SlowCommitJournal(TimeUnit.MICROSECONDS.toNanos(commitMicros));
+        ReadLogSampler readLogSampler = new ReadLogSampler(1);
+        StoreVersion storeVersion = new StoreVersion();
+        TransactionHistory transactionHistory = new TransactionHistory(256, 64, Duration.ofDays(90));
+        AccountSnapshots snapshots = new AccountSnapshots();
+        CustomerDao customerDao = new CustomerDao(journal, readLogSampler, storeVersion);
+        AccountLocks accountLocks = new AccountLocks(metrics);
+        AccountDao accountDao = new AccountDao(metrics, accountLocks, journal, readLogSampler, snapshots, storeVersion, transactionHistory, 16);
+        Customer customer = customerDao.save(new Customer("Bench Customer", "bench@example.com", 30));
+
+        List<Account> batch = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account(Currency.USD, customer);
+            account.setBalanceMinorUnits(1_000_000_000L);
+            batch.add(account);
+        }
+        accountDao.saveAll(batch);
+        numbers = batch.stream().map(Account::getNumber).toArray(String[]::new);
+
+        executor = "virtual".equals(mode)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        LedgerRing ledger = new LedgerRing(1 << 16, LedgerRing.Backpressure.DROP, event -> { }, metrics);
+        ledger.start();
+        accountService = new DefaultAccountService(accountDao, accountLocks, metrics, journal, ledger, snapshots, new FxRates("fx-rates.csv"), transactionHistory, executor::execute);
+        latencies = new long[1 << 22];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        long[] sorted = Arrays.copyOf(latencies, Math.min(recorded, latencies.length));
+        Arrays.sort(sorted);
+        if (sorted.length > 0) {
+            System.out.printf("%n%s: %d requests, p50 %.2f ms, p99 %.2f ms%n", mode, sorted.length,
+                    sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6);
+        }
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long[] finished = new long[concurrency];
+        long submitted = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            int request = i;
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(ACCOUNTS);
+                int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                accountService.transfer(numbers[from], numbers[to], AMOUNT);
+                finished[request] = System.nanoTime();
+                done.countDown();
+            });
+        }
+        done.await();
+        for (long end : finished) {
+            if (recorded < latencies.length) {
+                latencies[recorded] = end - submitted;
+            }
+            recorded++;
+        }
+    }
+
+    private static final class SlowCommitJournal implements Journal {
+        private final long commitNanos;
+
+        private SlowCommitJournal(long commitNanos) {
+            this.commitNanos = commitNanos;
+        }
+
+        @Override
+        public long customerSaved(Customer customer) {
+            return 0;
+        }
+
+        @Override
+        public long customerDeleted(Long customerId) {
+            return 0;
+        }
+
+        @Override
+        public long accountSaved(Account account) {
+            return 0;
+        }
+
+        @Override
+        public long accountDeleted(Account account) {
+            return 0;
+        }
+
+        @Override
+        public long balanceChanged(Account account) {
+            return 1;
+        }
+
+        @Override
+        public long transferred(Account from, Account to) {
+            return 1;
+        }
+
+        @Override
+        public void awaitDurable(long sequence) {
+            if (sequence > 0) {
+                LockSupport.parkNanos(commitNanos);
+            }
+        }
+    }
+}
@@ -1,58 +1,248 @@
 package homework1.dao;
 
 import homework1.domain.Account;
-import homework1.domain.Currency;
 import homework1.domain.Customer;
+import homework1.dto.CurrencyStatsDTO;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.Journal;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
 
 @Repository
 @Slf4j
 public class AccountDao implements Dao<Account> {
-    private static long nextId = 1;
-    private List<Account> accounts = new ArrayList<>();
+    // Below this many accounts a fan-out costs more in hand-offs than it saves.
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final long NOT_CLAIMED = -1;
+    private static final long NOT_INDEXED = -1;
 
-    public AccountDao() {
-        initializeDefaultAccounts();
+    private final AtomicLong nextId = new AtomicLong(1);
+    // Partitioned by hash of the account number: point operations touch one shard, batch
+    // writes run once per shard on the common ForkJoinPool.
+    private final AccountShard[] shards;
+    // Ids are not derived from the number, so the only store-wide structure is this map from
+    // id to the shard holding it: putIfAbsent reserves an id for as long as its account
+    // lives, which keeps ids unique across shards, and getById finds the shard in one lookup.
+    private final Map<Long, Integer> shardById = new ConcurrentHashMap<>();
+    private final CurrencyStats currencyStats = new CurrencyStats();
+    private final HotPathMetrics metrics;
+    private final AccountLocks accountLocks;
+    private final Journal journal;
+    private final ReadLogSampler readLogSampler;
+    private final AccountSnapshots snapshots;
+    private final StoreVersion storeVersion;
+    private final TransactionHistory transactionHistory;
+
+    public AccountDao(HotPathMetrics metrics, AccountLocks accountLocks, Journal journal, ReadLogSampler readLogSampler,
+                      AccountSnapshots snapshots, StoreVersion storeVersion, TransactionHistory transactionHistory,
+                      @Value("${bank.store.shards:16}") int shardCount) {
+        if (shardCount <= 0 || Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("bank.store.shards must be a power of two, got " + shardCount);
+        }
+        this.shards = new AccountShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new AccountShard();
+        }
+        this.metrics = metrics;
+        this.accountLocks = accountLocks;
+        this.journal = journal;
+        this.readLogSampler = readLogSampler;
+        this.snapshots = snapshots;
+        this.storeVersion = storeVersion;
+        this.transactionHistory = transactionHistory;
+    }
+
+    private int shardIndex(String number) {
+        int h = number.hashCode();
+        return (h ^ (h >>> 16)) & (shards.length - 1);
+    }
+
+    private int size() {
+        return shardById.size();
+    }
+
+    private AccountShard shardOf(String number) {
+        return shards[shardIndex(number)];
+    }
+
+    // Runs the task once per shard, in parallel only when asked to.
+    private <T> List<T> fanOut(boolean parallel, IntFunction<T> task) {
+        List<T> results = new ArrayList<>(shards.length);
+        if (!parallel) {
+            for (int i = 0; i < shards.length; i++) {
+                results.add(task.apply(i));
+            }
+            return results;
+        }
+        List<ForkJoinTask<T>> forked = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            forked.add(ForkJoinPool.commonPool().submit(() -> task.apply(shard)));
+        }
+        for (ForkJoinTask<T> shardTask : forked) {
+            results.add(shardTask.join());
+        }
+        return results;
     }
 
-    private void initializeDefaultAccounts() {
-        List<Customer> customers = CustomerUtils.createCustomers();
-        for (Customer customer : customers) {
-            Account account = new Account(getCurrencyForCustomer(customer.getName()), customer);
-            save(account);
+    // The number index is the source of truth: whoever wins the reservation of a number
+    // owns the id and customer index updates for that account, including the link
+    // from the customer back to its accounts. Returns the journal sequence of the
+    // creation record, 0 when not journaled, or NOT_CLAIMED if the number is taken.
+    private long index(Account account, boolean assignId, boolean journaled) {
+        long sequence = claim(account, assignId, journaled);
+        if (sequence != NOT_CLAIMED) {
+            link(account);
         }
+        return sequence;
     }
 
-    private static Currency getCurrencyForCustomer(String name) {
-        String[] names = CustomerUtils.names;
-        for (int i = 0; i < names.length; i++) {
-            if (names[i].equals(name)) {
-                return Currency.values()[i];
+    // The shard-local half of index(): only the account's own shard and the id's entry in
+    // shardById are written. An explicit id that is already taken loses like a taken number. The
+    // creation record is appended before the account is published, so no balance change
+    // to it can be journaled, and acknowledged as durable, ahead of the record itself.
+    private long claim(Account account, boolean assignId, boolean journaled) {
+        String number = account.getNumber();
+        int shardIndex = shardIndex(number);
+        AccountShard shard = shards[shardIndex];
+        if (!shard.reservedNumbers.add(number)) {
+            return NOT_CLAIMED;
+        }
+        shard.journalGate.readLock().lock();
+        try {
+            if (shard.accountsByNumber.containsKey(number)) {
+                return NOT_CLAIMED;
+            }
+            if (assignId || account.getId() == null) {
+                account.setId(nextId.getAndIncrement());
             }
+            Long id = account.getId();
+            if (shardById.putIfAbsent(id, shardIndex) != null) {
+                return NOT_CLAIMED;
+            }
+            boolean published = false;
+            try {
+                long sequence = journaled ? journal.accountSaved(account) : 0;
+                // Counted before it becomes visible, so no balance change can reach the stats first.
+                currencyStats.added(account);
+                shard.accountsById.put(id, account);
+                shard.accountsByNumber.put(number, account);
+                Customer customer = account.getCustomer();
+                if (customer != null && customer.getId() != null) {
+                    shard.accountsByCustomerId.computeIfAbsent(customer.getId(), customerId -> ConcurrentHashMap.newKeySet()).add(account);
+                }
+                published = true;
+                return sequence;
+            } finally {
+                if (!published) {
+                    shardById.remove(id, shardIndex);
+                }
+            }
+        } finally {
+            shard.journalGate.readLock().unlock();
+            shard.reservedNumbers.remove(number);
         }
-        throw new IllegalArgumentException("Unknown customer name: " + name);
+    }
+
+    // The customer's account list is shared by all shards, so it is appended to in the
+    // caller's order rather than from inside a fan-out.
+    private void link(Account account) {
+        Customer customer = account.getCustomer();
+        if (customer != null) {
+            customer.getAccounts().add(account);
+            customer.touch();
+        }
+        storeVersion.bump();
+    }
+
+    // Returns the journal sequence of the deletion record, 0 when not journaled, or
+    // NOT_INDEXED if no account is indexed under the number. Runs under the account's stripe
+    // lock, so no balance change can land between the removal and the stats update.
+    private long unindex(String number, boolean journaled) {
+        AccountShard shard = shardOf(number);
+        int stripe = accountLocks.stripeOf(number);
+        accountLocks.lock(stripe);
+        shard.journalGate.readLock().lock();
+        try {
+            Account removed = shard.accountsByNumber.get(number);
+            if (removed == null || !drop(shard, removed)) {
+                return NOT_INDEXED;
+            }
+            Customer customer = removed.getCustomer();
+            if (customer != null) {
+                customer.getAccounts().remove(removed);
+                customer.touch();
+            }
+            storeVersion.bump();
+            return journaled ? journal.accountDeleted(removed) : 0;
+        } finally {
+            shard.journalGate.readLock().unlock();
+            accountLocks.unlock(stripe);
+        }
+    }
+
+    // Removes the account from its shard, releases its id, and takes it out of the stats and
+    // the history. The caller holds the account's stripe lock and its shard's journal gate,
+    // in that order.
+    private boolean drop(AccountShard shard, Account account) {
+        if (!shard.accountsByNumber.remove(account.getNumber(), account)) {
+            return false;
+        }
+        shard.accountsById.remove(account.getId(), account);
+        shardById.remove(account.getId());
+        currencyStats.removed(account);
+        Customer customer = account.getCustomer();
+        if (customer != null && customer.getId() != null) {
+            shard.accountsByCustomerId.computeIfPresent(customer.getId(), (id, customerAccounts) -> {
+                customerAccounts.remove(account);
+                return customerAccounts.isEmpty() ? null : customerAccounts;
+            });
+        }
+        snapshots.deleted(account);
+        transactionHistory.forget(account);
+        return true;
     }
 
     @Override
     public Account save(Account account) {
-        if (!accounts.contains(account)) {
-            account.setId(nextId++);
-            accounts.add(account);
+        long sequence = add(account);
+        if (sequence != NOT_CLAIMED) {
+            journal.awaitDurable(sequence);
             log.info("Account saved: {}", account);
-        } else {
-            log.error("Account already exists: {}", account);
         }
         return account;
     }
 
+    // save() without the wait for durability, for callers that index under a lock of their
+    // own and wait only after releasing it. Returns the journal sequence to wait for; when
+    // the number is already taken nothing is indexed and the sequence is negative.
+    public long add(Account account) {
+        long sequence = index(account, true, true);
+        if (sequence == NOT_CLAIMED) {
+            log.error("Account already exists: {}", account);
+        }
+        return sequence;
+    }
+
     @Override
     public boolean delete(Account account) {
-        if (accounts.contains(account)) {
-            accounts.remove(account);
+        long sequence = unindex(account.getNumber(), true);
+        if (sequence != NOT_INDEXED) {
+            journal.awaitDurable(sequence);
             log.info("Account deleted: {}", account);
             return true;
         } else {
@@ -64,25 +254,245 @@ public class AccountDao implements Dao<Account> {
     @Override
     public void deleteAll(List<Account> currentAccounts) {
         log.info("Deleted {} accounts", currentAccounts.size());
-        accounts.removeAll(currentAccounts);
+        long sequence = 0;
+        for (Account account : currentAccounts) {
+            sequence = Math.max(sequence, unindex(account.getNumber(), true));
+        }
+        journal.awaitDurable(sequence);
+    }
+
+    // Cascade for a deleted customer: each shard's reverse index hands over exactly that
+    // customer's accounts, so the shards are emptied independently, in parallel for a
+    // customer with many accounts, and the customer's own list is cleared once instead of
+    // shrinking the copy-on-write list one account at a time. Returns the journal sequence
+    // the caller waits for once it has released its own locks.
+    public long deleteAllOf(Customer customer) {
+        AtomicInteger deleted = new AtomicInteger();
+        List<Long> sequences = fanOut(customer.getAccounts().size() >= PARALLEL_THRESHOLD, index -> {
+            AccountShard shard = shards[index];
+            Set<Account> customerAccounts = shard.accountsByCustomerId.get(customer.getId());
+            long sequence = 0;
+            if (customerAccounts == null) {
+                return sequence;
+            }
+            for (Account account : customerAccounts) {
+                int stripe = accountLocks.stripeOf(account.getNumber());
+                accountLocks.lock(stripe);
+                shard.journalGate.readLock().lock();
+                try {
+                    if (drop(shard, account)) {
+                        sequence = journal.accountDeleted(account);
+                        deleted.incrementAndGet();
+                    }
+                } finally {
+                    shard.journalGate.readLock().unlock();
+                    accountLocks.unlock(stripe);
+                }
+            }
+            return sequence;
+        });
+        if (deleted.get() == 0) {
+            return 0;
+        }
+        customer.getAccounts().clear();
+        customer.touch();
+        storeVersion.bump();
+        log.info("Deleted {} accounts of customer with id {}", deleted.get(), customer.getId());
+        return sequences.stream().mapToLong(Long::longValue).max().orElse(0);
     }
 
     @Override
     public void saveAll(List<Account> currentAccounts) {
         log.info("Saved {} accounts", currentAccounts.size());
-        accounts.addAll(currentAccounts);
+        // Ids for the whole batch are taken with one getAndAdd instead of one CAS per account.
+        int size = currentAccounts.size();
+        int missingIds = 0;
+        for (Account account : currentAccounts) {
+            if (account.getId() == null) {
+                missingIds++;
+            }
+        }
+        long nextBlockId = nextId.getAndAdd(missingIds);
+        boolean[] assigned = new boolean[size];
+        int[] shardOfAccount = new int[size];
+        // Two accounts with the same explicit id may hash to different shards, where the
+        // reservation in shardById would let whichever shard runs first win; a repeated id is
+        // rejected here instead, before the split, so the first occurrence wins as it does for numbers.
+        boolean[] rejected = new boolean[size];
+        Set<Long> explicitIds = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            Account account = currentAccounts.get(i);
+            if (account.getId() == null) {
+                account.setId(nextBlockId++);
+                assigned[i] = true;
+            } else if (!explicitIds.add(account.getId())) {
+                rejected[i] = true;
+                log.error("Duplicate account id in batch: {}", account);
+            }
+            shardOfAccount[i] = shardIndex(account.getNumber());
+        }
+        // Each shard claims its own accounts in batch order, so a duplicate number in the
+        // batch still loses to its first occurrence.
+        boolean[] claimed = new boolean[size];
+        List<Long> sequences = fanOut(size >= PARALLEL_THRESHOLD, shard -> {
+            long shardSequence = 0;
+            for (int i = 0; i < size; i++) {
+                if (shardOfAccount[i] == shard && !rejected[i]) {
+                    long sequence = claim(currentAccounts.get(i), false, true);
+                    if (sequence != NOT_CLAIMED) {
+                        claimed[i] = true;
+                        shardSequence = sequence;
+                    }
+                }
+            }
+            return shardSequence;
+        });
+        for (int i = 0; i < size; i++) {
+            Account account = currentAccounts.get(i);
+            if (claimed[i]) {
+                link(account);
+                if (!assigned[i]) {
+                    nextId.accumulateAndGet(account.getId() + 1, Math::max);
+                }
+            } else if (assigned[i]) {
+                account.setId(null);
+            }
+        }
+        long sequence = 0;
+        for (long shardSequence : sequences) {
+            sequence = Math.max(sequence, shardSequence);
+        }
+        journal.awaitDurable(sequence);
+    }
+
+    // Recovery entry points: a restored account replaces whatever was indexed under its
+    // number, keeps its original id and is neither logged nor journaled again.
+    public void restore(Account account) {
+        unindex(account.getNumber(), false);
+        index(account, false, false);
+        nextId.accumulateAndGet(account.getId() + 1, Math::max);
+    }
+
+    public void restoreBalance(String number, long balanceMinorUnits) {
+        Account account = shardOf(number).accountsByNumber.get(number);
+        if (account != null) {
+            long previousBalanceMinorUnits = account.getBalanceMinorUnits();
+            account.setBalanceMinorUnits(balanceMinorUnits);
+            balanceChanged(account, previousBalanceMinorUnits);
+        }
+    }
+
+    // Called under the account's stripe lock before any balance change. Removal takes the same
+    // lock, so an account that passes here stays in the store, its stats and its history until
+    // the change has been recorded.
+    public void expectIndexed(Account account) {
+        if (shardOf(account.getNumber()).accountsByNumber.get(account.getNumber()) != account) {
+            throw new IllegalArgumentException("Account with number " + account.getNumber() + " not found");
+        }
+    }
+
+    // Called under the account's stripe lock before a conditional balance change, so the
+    // comparison and the bump in balanceChanged form one compare-and-set.
+    public void expectVersion(Account account, Long expectedVersion) {
+        if (expectedVersion != null && account.getVersion() != expectedVersion) {
+            throw new VersionConflictException("Account " + account.getNumber() + " is at version "
+                    + account.getVersion() + ", not " + expectedVersion);
+        }
+    }
+
+    // Called after every balance change, under the account's stripe lock.
+    public void balanceChanged(Account account, long previousBalanceMinorUnits) {
+        account.setVersion(account.getVersion() + 1);
+        currencyStats.balanceChanged(account, previousBalanceMinorUnits);
+        Customer customer = account.getCustomer();
+        if (customer != null) {
+            customer.touch();
+        }
+        storeVersion.bump();
+    }
+
+    public long version() {
+        return storeVersion.current();
+    }
+
+    // Holds off account creation and deletion, and lets those in flight finish, so the
+    // journal can be rotated at a point where every account recorded in the old segments is
+    // already in the maps. Balance changes are not held: they update the account before
+    // appending its record, so a snapshot taken after the rotation sees them either way.
+    public void pauseWrites() {
+        for (AccountShard shard : shards) {
+            shard.journalGate.writeLock().lock();
+        }
     }
 
+    public void resumeWrites() {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].journalGate.writeLock().unlock();
+        }
+    }
+
+    public List<CurrencyStatsDTO> stats() {
+        return currencyStats.snapshot();
+    }
+
+    public void forget(String number) {
+        unindex(number, false);
+    }
+
+    // Each shard is copied on its own, in parallel for a large store, and the copies are
+    // merged back into ascending id order.
     @Override
     public List<Account> findAll() {
-        log.info("Retrieved all accounts");
+        if (readLogSampler.sample()) {
+            log.info("Retrieved all accounts");
+        }
+        int size = size();
+        List<List<Account>> parts = fanOut(size >= PARALLEL_THRESHOLD,
+                shard -> new ArrayList<>(shards[shard].accountsById.values()));
+        List<Iterator<Account>> sources = new ArrayList<>(parts.size());
+        for (List<Account> part : parts) {
+            sources.add(part.iterator());
+        }
+        List<Account> accounts = new ArrayList<>(size);
+        new IdOrderIterator(sources).forEachRemaining(accounts::add);
         return accounts;
     }
 
+    // Paging, streaming and snapshots rely on ascending ids across the whole store, so the
+    // shards' tails are merged lazily; a page reads only as far into each shard as it needs.
+    @Override
+    public Iterator<Account> iterateAfter(Long afterId) {
+        List<Iterator<Account>> sources = new ArrayList<>(shards.length);
+        for (AccountShard shard : shards) {
+            NavigableMap<Long, Account> range = afterId == null ? shard.accountsById : shard.accountsById.tailMap(afterId, false);
+            sources.add(range.values().iterator());
+        }
+        return new IdOrderIterator(sources);
+    }
+
+    public long lastId() {
+        long lastId = 0;
+        for (AccountShard shard : shards) {
+            Map.Entry<Long, Account> last = shard.accountsById.lastEntry();
+            if (last != null) {
+                lastId = Math.max(lastId, last.getKey());
+            }
+        }
+        return lastId;
+    }
+
+    private Account findById(Long id) {
+        Integer shard = shardById.get(id);
+        return shard != null ? shards[shard].accountsById.get(id) : null;
+    }
+
     @Override
     public boolean deleteById(Long id) {
-        boolean removed = accounts.removeIf(account -> account.getId().equals(id));
+        Account account = findById(id);
+        long sequence = account != null ? unindex(account.getNumber(), true) : NOT_INDEXED;
+        boolean removed = sequence != NOT_INDEXED;
         if (removed) {
+            journal.awaitDurable(sequence);
             log.info("Deleted account with id {}", id);
         } else {
             log.error("Failed to delete account with id {}", id);
@@ -92,39 +502,39 @@ public class AccountDao implements Dao<Account> {
 
     @Override
     public Account getById(Long id) {
-        log.info("Retrieving account with id {}", id);
-        return accounts.stream()
-                .filter(e -> e.getId().equals(id))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Account with id " + id + " not found"));
+        if (readLogSampler.sample()) {
+            log.info("Retrieving account with id {}", id);
+        }
+        long start = System.nanoTime();
+        Account account = findById(id);
+        metrics.getById(start);
+        if (account == null) {
+            throw new IllegalArgumentException("Account with id " + id + " not found");
+        }
+        return account;
     }
 
     public Account findByNumber(String accountNumber) {
-        log.info("Retrieving account by number {}", accountNumber);
-        return accounts.stream()
-                .filter(account -> account.getNumber().equals(accountNumber))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Account with number " + accountNumber + " not found"));
-    }
-
-    private boolean isMatchingCustomerId(Account account, Long customerId) {
-        Customer currentCustomer = account.getCustomer();
-        return currentCustomer != null && currentCustomer.getId().equals(customerId);
-    }
-
-    private void updateCustomerDataInAccount(Account account, Customer customer) {
-        Customer currentCustomer = account.getCustomer();
-        currentCustomer.setName(customer.getName());
-        currentCustomer.setEmail(customer.getEmail());
-        currentCustomer.setAge(customer.getAge());
-        log.info("Updated customer data in account with id {}", account.getId());
+        if (readLogSampler.sample()) {
+            log.info("Retrieving account by number {}", accountNumber);
+        }
+        long start = System.nanoTime();
+        Account account = shardOf(accountNumber).accountsByNumber.get(accountNumber);
+        metrics.findByNumber(start);
+        if (account == null) {
+            throw new IllegalArgumentException("Account with number " + accountNumber + " not found");
+        }
+        return account;
     }
 
-    public List<Account> updateCustomerData(Customer customer) {
-        log.info("Updating customer data for customer with id {}", customer.getId());
-        return findAll().stream()
-                .filter(a -> isMatchingCustomerId(a, customer.getId()))
-                .peek(account -> updateCustomerDataInAccount(account, customer))
-                .collect(Collectors.toList());
+    public List<Account> findByCustomerId(Long customerId) {
+        List<Account> customerAccounts = new ArrayList<>();
+        for (AccountShard shard : shards) {
+            Set<Account> shardAccounts = shard.accountsByCustomerId.get(customerId);
+            if (shardAccounts != null) {
+                customerAccounts.addAll(shardAccounts);
+            }
+        }
+        return customerAccounts;
     }
 }
@@ -0,0 +1,75 @@
+package homework1.dao;
+
+import homework1.metrics.HotPathMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class AccountLocks {
+    private static final int STRIPES = 1024;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final HotPathMetrics metrics;
+
+    public AccountLocks(HotPathMetrics metrics) {
+        this.metrics = metrics;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public int stripeOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // Only contended acquisitions are timed, so the uncontended path stays a single CAS.
+    public void lock(int stripe) {
+        ReentrantLock lock = locks[stripe];
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            metrics.lockWait(start);
+        }
+    }
+
+    public void unlock(int stripe) {
+        locks[stripe].unlock();
+    }
+
+    // Two-account operations always take the lower stripe first, so concurrent
+    // transfers A->B and B->A can never wait on each other in a cycle.
+    public void lockBoth(int first, int second) {
+        if (first == second) {
+            lock(first);
+        } else if (first < second) {
+            lock(first);
+            lock(second);
+        } else {
+            lock(second);
+            lock(first);
+        }
+    }
+
+    public void unlockBoth(int first, int second) {
+        unlock(first);
+        if (first != second) {
+            unlock(second);
+        }
+    }
+
+    // Takes every stripe in ascending order, which no operation holding a stripe can be
+    // waiting behind; used as a short barrier where a consistent cut of all balances is needed.
+    public void lockAll() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            lock(stripe);
+        }
+    }
+
+    public void unlockAll() {
+        for (int stripe = STRIPES - 1; stripe >= 0; stripe--) {
+            unlock(stripe);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package homework1.dao;
+
+import homework1.domain.Account;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// One partition of the account store: the accounts whose number hashes to it, indexed by
+// number, by id and by customer. Shards share no structure, so writes to different shards
+// never touch the same map, and a shard can be read on its own thread during a fan-out.
+final class AccountShard {
+    final Map<String, Account> accountsByNumber = new ConcurrentHashMap<>();
+    // Ascending ids of this shard only; readers that need the whole store in id order merge
+    // the shards with IdOrderIterator.
+    final NavigableMap<Long, Account> accountsById = new ConcurrentSkipListMap<>();
+    final Map<Long, Set<Account>> accountsByCustomerId = new ConcurrentHashMap<>();
+    // Numbers being added right now; held from the duplicate check until the account is published.
+    final Set<String> reservedNumbers = ConcurrentHashMap.newKeySet();
+    // Shared by every creation or deletion for the span of its journal append and its index
+    // change; taken exclusively while the journal rotates, so no account is recorded in a
+    // segment the snapshot retires without also being in (or out of) the maps it reads.
+    final ReadWriteLock journalGate = new ReentrantReadWriteLock();
+}
@@ -0,0 +1,82 @@
+package homework1.dao;
+
+import homework1.domain.Account;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Point-in-time views of the account book without copying it. While a snapshot is open,
+// the first change to an account's balance saves the balance it had at the cut, and an
+// account deleted after the cut is kept aside, so a reader can reconstruct the book as
+// it was. Memory grows only with the accounts touched while the snapshot is open.
+@Component
+public class AccountSnapshots {
+    private final List<Snapshot> open = new CopyOnWriteArrayList<>();
+
+    public static final class Snapshot {
+        private final long lastId;
+        private final Map<String, Long> balancesAtCut = new ConcurrentHashMap<>();
+        private final NavigableMap<Long, Account> deletedSinceCut = new ConcurrentSkipListMap<>();
+
+        private Snapshot(long lastId) {
+            this.lastId = lastId;
+        }
+
+        // Accounts with a higher id were created after the cut.
+        public long lastId() {
+            return lastId;
+        }
+
+        // The caller must hold the account's stripe lock, which orders this read against
+        // balance changes and their before-images.
+        public long balanceAtCut(Account account) {
+            Long balance = balancesAtCut.get(account.getNumber());
+            return balance != null ? balance : account.getBalanceMinorUnits();
+        }
+
+        public NavigableMap<Long, Account> deletedSinceCut() {
+            return deletedSinceCut;
+        }
+    }
+
+    // The caller must make sure no balance change is in flight, e.g. by holding every
+    // account lock, so that the cut falls between whole operations.
+    public Snapshot open(long lastId) {
+        Snapshot snapshot = new Snapshot(lastId);
+        open.add(snapshot);
+        return snapshot;
+    }
+
+    public void close(Snapshot snapshot) {
+        open.remove(snapshot);
+    }
+
+    // Called under the account's stripe lock, before its balance is changed.
+    public void beforeBalanceChange(Account account) {
+        if (open.isEmpty()) {
+            return;
+        }
+        for (Snapshot snapshot : open) {
+            if (account.getId() != null && account.getId() <= snapshot.lastId) {
+                snapshot.balancesAtCut.putIfAbsent(account.getNumber(), account.getBalanceMinorUnits());
+            }
+        }
+    }
+
+    // Called after the account has left the indexes; snapshots opened later never see it.
+    public void deleted(Account account) {
+        if (open.isEmpty()) {
+            return;
+        }
+        for (Snapshot snapshot : open) {
+            if (account.getId() != null && account.getId() <= snapshot.lastId) {
+                snapshot.deletedSinceCut.putIfAbsent(account.getId(), account);
+            }
+        }
+    }
+}
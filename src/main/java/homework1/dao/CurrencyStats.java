@@ -0,0 +1,75 @@
+package homework1.dao;
+
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.dto.CurrencyStatsDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Running per-currency totals, kept up to date by AccountDao as accounts are indexed,
+// removed and change balance, so reading them never scans the accounts. Sum and count are
+// LongAdders, which spread concurrent updates over cells instead of one contended word;
+// min and max come from a sorted multiset of balances, whose ends are read directly.
+final class CurrencyStats {
+    private final Totals[] totals = new Totals[Currency.values().length];
+
+    CurrencyStats() {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new Totals();
+        }
+    }
+
+    void added(Account account) {
+        Totals currencyTotals = totals[account.getCurrency().ordinal()];
+        currencyTotals.count.increment();
+        currencyTotals.add(account.getBalanceMinorUnits());
+    }
+
+    void removed(Account account) {
+        Totals currencyTotals = totals[account.getCurrency().ordinal()];
+        currencyTotals.count.decrement();
+        currencyTotals.remove(account.getBalanceMinorUnits());
+    }
+
+    void balanceChanged(Account account, long previousBalanceMinorUnits) {
+        Totals currencyTotals = totals[account.getCurrency().ordinal()];
+        currencyTotals.remove(previousBalanceMinorUnits);
+        currencyTotals.add(account.getBalanceMinorUnits());
+    }
+
+    List<CurrencyStatsDTO> snapshot() {
+        List<CurrencyStatsDTO> result = new ArrayList<>(totals.length);
+        for (Currency currency : Currency.values()) {
+            Totals currencyTotals = totals[currency.ordinal()];
+            Map.Entry<Long, Long> min = currencyTotals.balances.firstEntry();
+            Map.Entry<Long, Long> max = currencyTotals.balances.lastEntry();
+            result.add(new CurrencyStatsDTO(currency, currencyTotals.count.sum(),
+                    currency.fromMinorUnits(currencyTotals.sum.sum()),
+                    min != null ? currency.fromMinorUnits(min.getKey()) : null,
+                    max != null ? currency.fromMinorUnits(max.getKey()) : null));
+        }
+        return result;
+    }
+
+    private static final class Totals {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        // Balance -> number of accounts holding it. The counts are immutable Longs, so the
+        // map's CAS-based merge and computeIfPresent keep them exact under concurrency.
+        private final ConcurrentSkipListMap<Long, Long> balances = new ConcurrentSkipListMap<>();
+
+        private void add(long balanceMinorUnits) {
+            sum.add(balanceMinorUnits);
+            balances.merge(balanceMinorUnits, 1L, Long::sum);
+        }
+
+        private void remove(long balanceMinorUnits) {
+            sum.add(-balanceMinorUnits);
+            balances.computeIfPresent(balanceMinorUnits, (balance, accounts) -> accounts == 1 ? null : accounts - 1);
+        }
+    }
+}
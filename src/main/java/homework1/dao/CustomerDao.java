@@ -1,41 +1,102 @@
 package homework1.dao;
 
 import homework1.domain.Customer;
+import homework1.persistence.Journal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Repository
 @Slf4j
 public class CustomerDao implements Dao<Customer> {
-    private static long nextId = 1;
-    private List<Customer> customers = new ArrayList<>();
+    public static final long NOT_FOUND = -1;
+    public static final long VERSION_CONFLICT = -2;
 
-    public CustomerDao() {
-        initializeDefaultCustomers();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final NavigableMap<Long, Customer> customers = new ConcurrentSkipListMap<>();
+    private final CustomerSearchIndex searchIndex = new CustomerSearchIndex();
+    private final Journal journal;
+    private final ReadLogSampler readLogSampler;
+    private final StoreVersion storeVersion;
+
+    public CustomerDao(Journal journal, ReadLogSampler readLogSampler, StoreVersion storeVersion) {
+        this.journal = journal;
+        this.readLogSampler = readLogSampler;
+        this.storeVersion = storeVersion;
     }
 
-    private void initializeDefaultCustomers() {
-        for (Customer customer : CustomerUtils.createCustomers()) {
-            save(customer);
-        }
+    private void changed(Customer customer) {
+        customer.touch();
+        storeVersion.bump();
+    }
+
+    private void indexed(Customer customer) {
+        searchIndex.index(customer);
+        changed(customer);
+    }
+
+    private void removed(Customer customer) {
+        searchIndex.remove(customer);
+        changed(customer);
+    }
+
+    public long version() {
+        return storeVersion.current();
     }
 
     @Override
     public Customer save(Customer customer) {
-        if(!customers.contains(customer)) {
-            customer.setId(nextId++);
-            customers.add(customer);
+        if (customer.getId() == null || !customers.containsKey(customer.getId())) {
+            customer.setId(nextId.getAndIncrement());
+            customers.put(customer.getId(), customer);
+            indexed(customer);
+            journal.awaitDurable(journal.customerSaved(customer));
             log.info("Customer saved: {}", customer);
+        } else if (customers.get(customer.getId()) == customer) {
+            // Saving the stored instance again is how updates are committed.
+            indexed(customer);
+            journal.awaitDurable(journal.customerSaved(customer));
         }
         return customer;
     }
 
+    // Applies changes to the stored customer, without waiting for its journal record. With an
+    // expected version the update only goes ahead if nothing changed the customer since that
+    // version was read; the claim is a single compareAndSet on the version. The caller holds
+    // the customer's lock, which removal takes too, so a customer that passes the membership
+    // check cannot have its deletion journaled ahead of this update. Returns the sequence to
+    // wait for, or VERSION_CONFLICT when the expected version no longer matches.
+    public long update(Customer customer, Long expectedVersion, Consumer<Customer> changes) {
+        if (customers.get(customer.getId()) != customer) {
+            throw new IllegalArgumentException("Customer with id " + customer.getId() + " not found");
+        }
+        if (expectedVersion == null) {
+            customer.beginUpdate();
+        } else if (!customer.beginUpdate(expectedVersion)) {
+            return VERSION_CONFLICT;
+        }
+        try {
+            changes.accept(customer);
+            searchIndex.index(customer);
+        } finally {
+            customer.endUpdate();
+        }
+        storeVersion.bump();
+        return journal.customerSaved(customer);
+    }
+
     @Override
     public boolean delete(Customer customer) {
-        if (customers.contains(customer)) {
-            customers.remove(customer);
+        if (customer.getId() != null && customers.remove(customer.getId()) != null) {
+            removed(customer);
+            journal.awaitDurable(journal.customerDeleted(customer.getId()));
             log.info("Customer deleted: {}", customer);
             return true;
         }
@@ -45,25 +106,106 @@ public class CustomerDao implements Dao<Customer> {
     @Override
     public void deleteAll(List<Customer> currentCustomers) {
         log.info("Deleted {} customers", currentCustomers.size());
-        customers.removeAll(currentCustomers);
+        long sequence = 0;
+        for (Customer customer : currentCustomers) {
+            if (customer.getId() != null && customers.remove(customer.getId()) != null) {
+                removed(customer);
+                sequence = journal.customerDeleted(customer.getId());
+            }
+        }
+        journal.awaitDurable(sequence);
     }
 
     @Override
     public void saveAll(List<Customer> currentCustomers) {
         log.info("Saved {} customers", currentCustomers.size());
-        customers.addAll(currentCustomers);
+        int missingIds = 0;
+        for (Customer customer : currentCustomers) {
+            if (customer.getId() == null) {
+                missingIds++;
+            }
+        }
+        long nextBlockId = nextId.getAndAdd(missingIds);
+        long sequence = 0;
+        for (Customer customer : currentCustomers) {
+            if (customer.getId() == null) {
+                customer.setId(nextBlockId++);
+            } else {
+                nextId.accumulateAndGet(customer.getId() + 1, Math::max);
+            }
+            if (customers.putIfAbsent(customer.getId(), customer) == null) {
+                indexed(customer);
+                sequence = journal.customerSaved(customer);
+            }
+        }
+        journal.awaitDurable(sequence);
+    }
+
+    // Recovery entry points: they rebuild state from the journal and snapshots, so they
+    // bypass logging and journaling and keep nextId ahead of every restored id.
+    public Customer restore(Long id, String name, String email, Integer age) {
+        Customer customer = customers.computeIfAbsent(id, key -> {
+            Customer restored = new Customer(name, email, age == null ? 0 : age);
+            restored.setId(key);
+            return restored;
+        });
+        customer.setName(name);
+        customer.setEmail(email);
+        customer.setAge(age);
+        indexed(customer);
+        nextId.accumulateAndGet(id + 1, Math::max);
+        return customer;
+    }
+
+    public void forget(Long id) {
+        Customer customer = customers.remove(id);
+        if (customer != null) {
+            removed(customer);
+        }
+    }
+
+    public Optional<Customer> findById(Long id) {
+        return Optional.ofNullable(customers.get(id));
+    }
+
+    public List<Customer> search(String query, int limit) {
+        if (readLogSampler.sample()) {
+            log.info("Searching customers by prefix {}", query);
+        }
+        return searchIndex.search(query, limit, customers);
     }
 
     @Override
     public List<Customer> findAll() {
-        log.info("Retrieved all customers");
-        return customers;
+        if (readLogSampler.sample()) {
+            log.info("Retrieved all customers");
+        }
+        return new ArrayList<>(customers.values());
+    }
+
+    @Override
+    public Iterator<Customer> iterateAfter(Long afterId) {
+        NavigableMap<Long, Customer> range = afterId == null ? customers : customers.tailMap(afterId, false);
+        return range.values().iterator();
+    }
+
+    // Removes the customer if it is still the stored instance, without waiting for its
+    // journal record. Returns the sequence to wait for, or NOT_FOUND.
+    public long remove(Customer customer) {
+        if (customer.getId() == null || !customers.remove(customer.getId(), customer)) {
+            return NOT_FOUND;
+        }
+        removed(customer);
+        return journal.customerDeleted(customer.getId());
     }
 
     @Override
     public boolean deleteById(Long id) {
-        boolean removed = customers.removeIf(customer -> customer.getId().equals(id));
+        Customer customer = customers.get(id);
+        long sequence = customer != null ? remove(customer) : NOT_FOUND;
+        boolean removed = sequence != NOT_FOUND;
         if (removed) {
+            journal.awaitDurable(sequence);
             log.info("Deleted customer with id {}", id);
         } else {
             log.error("Failed to delete customer with id {}", id);
@@ -73,10 +215,13 @@ public class CustomerDao implements Dao<Customer> {
 
     @Override
     public Customer getById(Long id) {
-        log.info("Retrieving customer with id {}", id);
-        return customers.stream()
-                .filter(e -> e.getId().equals(id))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Customer with id " + id + " not found"));
+        if (readLogSampler.sample()) {
+            log.info("Retrieving customer with id {}", id);
+        }
+        Customer customer = customers.get(id);
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer with id " + id + " not found");
+        }
+        return customer;
     }
 }
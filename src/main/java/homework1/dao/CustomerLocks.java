@@ -0,0 +1,35 @@
+package homework1.dao;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Striped per-customer locks ordering the changes of one customer against each other:
+// field updates, account creation and the cascade delete. Like AccountLocks they are
+// ReentrantLocks rather than monitors, so a virtual thread waiting on one unmounts, and
+// they are held only while indexes change; journal durability is awaited after unlocking.
+@Component
+public class CustomerLocks {
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public CustomerLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private ReentrantLock lockOf(Long customerId) {
+        int h = customerId.hashCode();
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    public void lock(Long customerId) {
+        lockOf(customerId).lock();
+    }
+
+    public void unlock(Long customerId) {
+        lockOf(customerId).unlock();
+    }
+}
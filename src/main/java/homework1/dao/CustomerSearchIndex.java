@@ -0,0 +1,117 @@
+package homework1.dao;
+
+import homework1.domain.Customer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+// Sorted prefix index over customer names and emails. Every customer contributes its full
+// name, each further word of the name and its email, lower-cased; a prefix query is one
+// range scan of the skip list, so its cost depends on the number of hits read, not on the
+// number of customers. The keys a customer was indexed under are remembered, because
+// updates change name and email in place and the old keys must still be removable.
+final class CustomerSearchIndex {
+    // Keys are "<term>\0<field><id>": plain strings compare without any extra indirection,
+    // and the separator sorts below every character, so an exact match comes first.
+    private static final char SEPARATOR = '\0';
+    private static final char NAME = '0';
+    private static final char NAME_WORD = '1';
+    private static final char EMAIL = '2';
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Reading a few candidates per requested result leaves room to rank and deduplicate
+    // customers matched through more than one term.
+    private static final int CANDIDATES_PER_RESULT = 4;
+
+    private final NavigableMap<String, Customer> terms = new ConcurrentSkipListMap<>();
+    private final Map<Long, List<String>> keysByCustomerId = new ConcurrentHashMap<>();
+
+    void index(Customer customer) {
+        synchronized (customer) {
+            unindex(customer);
+            List<String> keys = keysOf(customer);
+            for (String key : keys) {
+                terms.put(key, customer);
+            }
+            keysByCustomerId.put(customer.getId(), keys);
+        }
+    }
+
+    void remove(Customer customer) {
+        synchronized (customer) {
+            unindex(customer);
+        }
+    }
+
+    private void unindex(Customer customer) {
+        List<String> previous = keysByCustomerId.remove(customer.getId());
+        if (previous != null) {
+            for (String key : previous) {
+                terms.remove(key);
+            }
+        }
+    }
+
+    // Exact matches rank first, then full-name hits before later name words before emails,
+    // then shorter terms; key order decides among the rest.
+    List<Customer> search(String query, int limit, Map<Long, Customer> live) {
+        String prefix = normalize(query);
+        NavigableMap<String, Customer> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        int candidates = limit * CANDIDATES_PER_RESULT;
+        Map<Customer, String> best = new HashMap<>();
+        for (Map.Entry<String, Customer> entry : range.entrySet()) {
+            Customer customer = entry.getValue();
+            // A customer deleted while being updated can leave keys behind for a moment.
+            if (live.get(customer.getId()) != customer) {
+                continue;
+            }
+            best.merge(customer, entry.getKey(), (current, key) -> rank(key, prefix) < rank(current, prefix) ? key : current);
+            if (--candidates == 0) {
+                break;
+            }
+        }
+        List<Map.Entry<Customer, String>> ranked = new ArrayList<>(best.entrySet());
+        ranked.sort(Comparator.comparingLong((Map.Entry<Customer, String> hit) -> rank(hit.getValue(), prefix))
+                .thenComparing(Map.Entry::getValue));
+        List<Customer> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            result.add(ranked.get(i).getKey());
+        }
+        return result;
+    }
+
+    private static long rank(String key, String prefix) {
+        int termLength = key.indexOf(SEPARATOR);
+        long partial = termLength == prefix.length() ? 0 : 1;
+        return partial << 40 | (long) (key.charAt(termLength + 1) - NAME) << 32 | termLength;
+    }
+
+    private static List<String> keysOf(Customer customer) {
+        List<String> keys = new ArrayList<>(4);
+        String id = String.valueOf(customer.getId());
+        String name = normalize(customer.getName());
+        if (!name.isEmpty()) {
+            keys.add(name + SEPARATOR + NAME + id);
+            String[] words = name.split(" ");
+            for (int i = 1; i < words.length; i++) {
+                keys.add(words[i] + SEPARATOR + NAME_WORD + id);
+            }
+        }
+        String email = normalize(customer.getEmail());
+        if (!email.isEmpty()) {
+            keys.add(email + SEPARATOR + EMAIL + id);
+        }
+        return keys;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+}
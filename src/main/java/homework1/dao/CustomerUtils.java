@@ -1,6 +1,7 @@
 package homework1.dao;
 
 import homework1.domain.Account;
+import homework1.domain.Currency;
 import homework1.domain.Customer;
 
 import java.util.*;
@@ -24,6 +25,22 @@ public class CustomerUtils {
         return customers;
     }
 
+    public static void seedDefaults(CustomerDao customerDao, AccountDao accountDao) {
+        for (Customer customer : createCustomers()) {
+            customerDao.save(customer);
+            accountDao.save(new Account(getCurrencyForCustomer(customer.getName()), customer));
+        }
+    }
+
+    private static Currency getCurrencyForCustomer(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return Currency.values()[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown customer name: " + name);
+    }
+
     public static String getDefaultCustomerEmail(String name) {
         return name.toLowerCase().replace(" ", "") + "@example.com";
     }
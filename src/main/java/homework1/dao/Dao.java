@@ -1,5 +1,7 @@
 package homework1.dao;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public interface Dao<T> {
@@ -16,4 +18,17 @@ public interface Dao<T> {
     boolean deleteById(Long id);
 
     T getById(Long id);
+
+    // Ascending id order, starting right after afterId (from the first entity when null).
+    // Weakly consistent: never throws on concurrent modification and copies nothing.
+    Iterator<T> iterateAfter(Long afterId);
+
+    default List<T> findPage(Long afterId, int limit) {
+        List<T> page = new ArrayList<>(limit);
+        Iterator<T> iterator = iterateAfter(afterId);
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
 }
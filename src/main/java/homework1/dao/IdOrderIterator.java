@@ -0,0 +1,54 @@
+package homework1.dao;
+
+import homework1.domain.Account;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+// Merges per-shard iterators, each already in ascending id order, into one ascending
+// sequence; a heap over the shards' current heads makes each step O(log shards).
+final class IdOrderIterator implements Iterator<Account> {
+    private static final class Head {
+        private final Iterator<Account> source;
+        private Account account;
+
+        private Head(Iterator<Account> source) {
+            this.source = source;
+            this.account = source.next();
+        }
+    }
+
+    private final PriorityQueue<Head> heads;
+
+    IdOrderIterator(List<Iterator<Account>> sources) {
+        heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                Comparator.comparingLong((Head head) -> head.account.getId()));
+        for (Iterator<Account> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head(source));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Account next() {
+        Head head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        Account next = head.account;
+        if (head.source.hasNext()) {
+            head.account = head.source.next();
+            heads.add(head);
+        }
+        return next;
+    }
+}
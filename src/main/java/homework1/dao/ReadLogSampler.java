@@ -0,0 +1,24 @@
+package homework1.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Read-path log lines are emitted for roughly one call in sampleEvery; 1 logs every read.
+// A thread-local draw keeps the decision free of shared counters.
+@Component
+public class ReadLogSampler {
+    private final int sampleEvery;
+
+    public ReadLogSampler(@Value("${bank.logging.read-sample-every:100}") int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("Read log sample rate must be at least 1: " + sampleEvery);
+        }
+        this.sampleEvery = sampleEvery;
+    }
+
+    public boolean sample() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+}
@@ -0,0 +1,23 @@
+package homework1.dao;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// One stamp for both collections: the customer view embeds accounts and the account view
+// embeds customers, so any change to either invalidates both. Writers bump it after the
+// change is visible and readers take it before reading, so a stamp never labels data
+// older than itself. A LongAdder keeps the bump off a single contended cache line; its
+// sum only ever grows because increments are the only updates.
+@Component
+public class StoreVersion {
+    private final LongAdder version = new LongAdder();
+
+    public void bump() {
+        version.increment();
+    }
+
+    public long current() {
+        return version.sum();
+    }
+}
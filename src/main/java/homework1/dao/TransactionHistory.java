@@ -0,0 +1,52 @@
+package homework1.dao;
+
+import homework1.domain.Account;
+import homework1.domain.TransactionType;
+import homework1.dto.TransactionDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Append-only, in-memory transaction logs keyed by account id. Retention is bounded per
+// account: a log keeps at most max-segments segments of segment-size entries, and segments
+// whose newest entry is older than the retention period are dropped as new ones are added.
+@Component
+public class TransactionHistory {
+    private final Map<Long, TransactionLog> logs = new ConcurrentHashMap<>();
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long retentionMillis;
+
+    public TransactionHistory(@Value("${bank.history.segment-size:256}") int segmentSize,
+                              @Value("${bank.history.max-segments:64}") int maxSegments,
+                              @Value("${bank.history.retention:P90D}") Duration retention) {
+        if (segmentSize <= 0 || maxSegments <= 0) {
+            throw new IllegalArgumentException("History segment size and count must be greater than 0");
+        }
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.retentionMillis = retention.toMillis();
+    }
+
+    // The caller must hold the account's stripe lock.
+    public void record(Account account, TransactionType type, long amountMinorUnits, Account counterparty) {
+        long now = System.currentTimeMillis();
+        logs.computeIfAbsent(account.getId(), id -> new TransactionLog())
+                .append(now, type, amountMinorUnits, account.getBalanceMinorUnits(),
+                        counterparty != null ? counterparty.getId() : 0,
+                        segmentSize, maxSegments, now - retentionMillis);
+    }
+
+    public List<TransactionDTO> range(Account account, long fromMillis, long toMillis, int limit) {
+        TransactionLog log = logs.get(account.getId());
+        return log != null ? log.range(fromMillis, toMillis, limit, account.getCurrency()) : List.of();
+    }
+
+    public void forget(Account account) {
+        logs.remove(account.getId());
+    }
+}
@@ -0,0 +1,122 @@
+package homework1.dao;
+
+import homework1.domain.Currency;
+import homework1.domain.TransactionType;
+import homework1.dto.TransactionDTO;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// One account's history as a chain of fixed-size segments, each a set of parallel primitive
+// arrays, so an entry costs a few array slots instead of an object. Appends come from a
+// single writer at a time (the caller holds the account's stripe lock); a reader sees an
+// entry once the segment's volatile size covers it, and sees segments through the volatile
+// array, which is replaced whenever a segment is added or evicted. Timestamps never go
+// backwards within a log, so ranges are found by binary search.
+final class TransactionLog {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Segment[] NO_SEGMENTS = new Segment[0];
+
+    private volatile Segment[] segments = NO_SEGMENTS;
+    private long lastTimestamp;
+
+    private static final class Segment {
+        private final long[] timestamps;
+        private final long[] amounts;
+        private final long[] balances;
+        private final long[] counterparties;
+        private final byte[] types;
+        private volatile int size;
+
+        private Segment(int capacity) {
+            timestamps = new long[capacity];
+            amounts = new long[capacity];
+            balances = new long[capacity];
+            counterparties = new long[capacity];
+            types = new byte[capacity];
+        }
+
+        // First index in [0, size) whose timestamp is not before the given one.
+        private int firstAtOrAfter(long timestamp, int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] < timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    void append(long now, TransactionType type, long amountMinorUnits, long balanceMinorUnits,
+                long counterpartyId, int segmentSize, int maxSegments, long retainAfter) {
+        long timestamp = Math.max(now, lastTimestamp);
+        lastTimestamp = timestamp;
+        Segment[] current = segments;
+        Segment tail = current.length > 0 ? current[current.length - 1] : null;
+        if (tail == null || tail.size == segmentSize) {
+            tail = new Segment(segmentSize);
+            current = withSegment(current, tail, maxSegments, retainAfter);
+            segments = current;
+        }
+        int index = tail.size;
+        tail.timestamps[index] = timestamp;
+        tail.amounts[index] = amountMinorUnits;
+        tail.balances[index] = balanceMinorUnits;
+        tail.counterparties[index] = counterpartyId;
+        tail.types[index] = (byte) type.ordinal();
+        tail.size = index + 1;
+    }
+
+    // Adds a segment, dropping the oldest ones beyond the count limit and any whose newest
+    // entry is older than the retention cut-off.
+    private static Segment[] withSegment(Segment[] current, Segment added, int maxSegments, long retainAfter) {
+        int first = Math.max(0, current.length + 1 - maxSegments);
+        while (first < current.length && current[first].timestamps[current[first].size - 1] < retainAfter) {
+            first++;
+        }
+        Segment[] next = Arrays.copyOfRange(current, first, current.length + 1);
+        next[next.length - 1] = added;
+        return next;
+    }
+
+    // Entries with from <= timestamp < to, oldest first, at most limit of them.
+    List<TransactionDTO> range(long from, long to, int limit, Currency currency) {
+        Segment[] current = segments;
+        List<TransactionDTO> result = new ArrayList<>();
+        int low = 0;
+        int high = current.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Segment segment = current[middle];
+            // Only the newest segment can still be empty, published just before its first entry.
+            int size = segment.size;
+            if (size > 0 && segment.timestamps[size - 1] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int s = low; s < current.length; s++) {
+            Segment segment = current[s];
+            int size = segment.size;
+            for (int i = s == low ? segment.firstAtOrAfter(from, size) : 0; i < size; i++) {
+                long timestamp = segment.timestamps[i];
+                if (timestamp >= to || result.size() == limit) {
+                    return result;
+                }
+                long counterparty = segment.counterparties[i];
+                result.add(new TransactionDTO(Instant.ofEpochMilli(timestamp), TYPES[segment.types[i]],
+                        currency.fromMinorUnits(segment.amounts[i]), currency.fromMinorUnits(segment.balances[i]),
+                        counterparty != 0 ? counterparty : null));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,8 @@
+package homework1.dao;
+
+// A conditional update found the entity at a different version than the client last saw.
+public class VersionConflictException extends RuntimeException {
+    public VersionConflictException(String message) {
+        super(message);
+    }
+}
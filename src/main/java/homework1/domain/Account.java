@@ -1,7 +1,11 @@
 package homework1.domain;
 
 import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.*;
+
+import java.math.BigDecimal;
 import java.util.UUID;
 
 @Setter
@@ -9,15 +13,29 @@ import java.util.UUID;
 @EqualsAndHashCode(of = "number")
 @ToString(exclude = "customer")
 @JsonFilter("accountFilter")
+@JsonPropertyOrder({"id", "number", "currency", "balance", "customer"})
 public class Account {
     private Long id = null;
-    private final String number = UUID.randomUUID().toString();
+    private final String number;
     private Currency currency;
-    private double balance = 0.0;
+    @JsonIgnore
+    private volatile long balanceMinorUnits = 0L;
+    // Bumped under the account's stripe lock on every balance change.
+    @JsonIgnore
+    private volatile long version = 0L;
     private Customer customer;
 
     public Account(Currency currency, Customer customer) {
+        this(UUID.randomUUID().toString(), currency, customer);
+    }
+
+    public Account(String number, Currency currency, Customer customer) {
+        this.number = number;
         this.currency = currency;
         this.customer = customer;
     }
+
+    public BigDecimal getBalance() {
+        return currency.fromMinorUnits(balanceMinorUnits);
+    }
 }
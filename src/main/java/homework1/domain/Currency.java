@@ -3,17 +3,21 @@ package homework1.domain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 
+import java.math.BigDecimal;
+
 public enum Currency {
-    USD("usd"),
-    EUR("eur"),
-    UAH("uah"),
-    CHF("chf"),
-    GBP("gbp");
+    USD("usd", 2),
+    EUR("eur", 2),
+    UAH("uah", 2),
+    CHF("chf", 2),
+    GBP("gbp", 2);
 
     private final String value;
+    private final int fractionDigits;
 
-    Currency(String value) {
+    Currency(String value, int fractionDigits) {
         this.value = value;
+        this.fractionDigits = fractionDigits;
     }
 
     @JsonValue
@@ -21,6 +25,28 @@ public enum Currency {
         return value;
     }
 
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    // Amounts finer than the currency's minor unit are rejected rather than rounded, so a
+    // balance never moves by anything but the amount the client sent.
+    public long toMinorUnits(BigDecimal amount) {
+        if (amount.stripTrailingZeros().scale() > fractionDigits) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " has more than "
+                    + fractionDigits + " decimal places allowed for " + value);
+        }
+        try {
+            return amount.movePointRight(fractionDigits).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " is not a valid " + value + " amount");
+        }
+    }
+
+    public BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, fractionDigits);
+    }
+
     @JsonCreator
     public static Currency fromValue(String value) {
         for (Currency currency : Currency.values()) {
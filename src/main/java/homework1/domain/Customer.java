@@ -1,13 +1,17 @@
 package homework1.domain;
 
 import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 @Getter
 @Setter
@@ -15,15 +19,69 @@ import java.util.List;
 @ToString
 @JsonFilter("customerFilter")
 public class Customer {
+    // An update of the fields is a few map writes; past this many spins the waiter parks instead.
+    private static final int UPDATE_SPINS = 64;
+
     private Long id = null;
     private String name;
     private String email;
     private Integer age;
-    private List<Account> accounts = new ArrayList<>();
+    private List<Account> accounts = new CopyOnWriteArrayList<>();
+    // Covers the customer's own fields and everything shown of its accounts, so balance
+    // changes move it too. Only used to tag what is served.
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final AtomicLong version = new AtomicLong();
+    // Covers the customer's own fields only; this is what conditional updates compare against.
+    // Updates add 2, so it is odd exactly while an update of the fields is in progress.
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final AtomicLong fieldsVersion = new AtomicLong();
 
     public Customer(String name, String email, int age) {
         this.name = name;
         this.email = email;
         this.age = age;
     }
+
+    @JsonIgnore
+    public long getVersion() {
+        return version.get();
+    }
+
+    @JsonIgnore
+    public long getFieldsVersion() {
+        return fieldsVersion.get();
+    }
+
+    public void touch() {
+        version.incrementAndGet();
+    }
+
+    // Claims the customer for an update only if its fields are still at expectedVersion; a
+    // stale or odd version means someone else changed them, or is changing them, in the meantime.
+    public boolean beginUpdate(long expectedVersion) {
+        return (expectedVersion & 1) == 0 && fieldsVersion.compareAndSet(expectedVersion, expectedVersion + 1);
+    }
+
+    // Unconditional claim: only waits while another update of this customer is in progress,
+    // spinning briefly and then parking so a stalled updater does not pin a core.
+    public void beginUpdate() {
+        for (int attempt = 0; ; attempt++) {
+            long current = fieldsVersion.get();
+            if ((current & 1) == 0 && fieldsVersion.compareAndSet(current, current + 1)) {
+                return;
+            }
+            if (attempt < UPDATE_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+    }
+
+    public void endUpdate() {
+        fieldsVersion.incrementAndGet();
+        touch();
+    }
 }
@@ -3,10 +3,12 @@ package homework1.dto;
 import homework1.domain.Currency;
 import lombok.*;
 
+import java.math.BigDecimal;
+
 @Getter
 @Setter
 @AllArgsConstructor
 public class AccountDTO {
     private Currency currency;
-    private double balance;
+    private BigDecimal balance;
 }
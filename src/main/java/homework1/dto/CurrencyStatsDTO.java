@@ -0,0 +1,17 @@
+package homework1.dto;
+
+import homework1.domain.Currency;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class CurrencyStatsDTO {
+    private Currency currency;
+    private long accounts;
+    private BigDecimal total;
+    private BigDecimal minBalance;
+    private BigDecimal maxBalance;
+}
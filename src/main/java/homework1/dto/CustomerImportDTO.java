@@ -0,0 +1,15 @@
+package homework1.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class CustomerImportDTO {
+    private String name;
+    private String email;
+    private Integer age;
+    private List<AccountDTO> accounts;
+}
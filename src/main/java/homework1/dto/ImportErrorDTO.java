@@ -0,0 +1,11 @@
+package homework1.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ImportErrorDTO {
+    private long line;
+    private String message;
+}
@@ -0,0 +1,15 @@
+package homework1.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ImportResultDTO {
+    private long imported;
+    private long failed;
+    private List<ImportErrorDTO> errors;
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,18 @@
+package homework1.dto;
+
+import homework1.domain.TransactionType;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class TransactionDTO {
+    private Instant timestamp;
+    private TransactionType type;
+    private BigDecimal amount;
+    private BigDecimal balance;
+    private Long counterpartyAccountId;
+}
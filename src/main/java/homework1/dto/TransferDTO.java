@@ -0,0 +1,14 @@
+package homework1.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class TransferDTO {
+    private String from;
+    private String to;
+    private BigDecimal amount;
+}
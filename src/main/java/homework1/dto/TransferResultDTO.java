@@ -0,0 +1,12 @@
+package homework1.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class TransferResultDTO {
+    private int index;
+    private boolean success;
+    private String message;
+}
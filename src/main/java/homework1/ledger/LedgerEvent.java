@@ -0,0 +1,43 @@
+package homework1.ledger;
+
+import homework1.domain.Currency;
+import lombok.Getter;
+
+// One preallocated ring slot. Publishers overwrite the fields in place, so a sink must
+// copy whatever it keeps beyond the accept call. For deposits and withdrawals only the
+// "from" side is set; a transfer also records what was credited, in the "to" currency.
+@Getter
+public final class LedgerEvent {
+    private LedgerEventType type;
+    private long timestampMillis;
+    private String fromNumber;
+    private String toNumber;
+    private Currency currency;
+    private long amountMinorUnits;
+    private Currency toCurrency;
+    private long creditedMinorUnits;
+    private long fromBalanceMinorUnits;
+    private long toBalanceMinorUnits;
+
+    void set(LedgerEventType type, String fromNumber, String toNumber, Currency currency,
+             long amountMinorUnits, Currency toCurrency, long creditedMinorUnits,
+             long fromBalanceMinorUnits, long toBalanceMinorUnits) {
+        this.type = type;
+        this.timestampMillis = System.currentTimeMillis();
+        this.fromNumber = fromNumber;
+        this.toNumber = toNumber;
+        this.currency = currency;
+        this.amountMinorUnits = amountMinorUnits;
+        this.toCurrency = toCurrency;
+        this.creditedMinorUnits = creditedMinorUnits;
+        this.fromBalanceMinorUnits = fromBalanceMinorUnits;
+        this.toBalanceMinorUnits = toBalanceMinorUnits;
+    }
+
+    void clear() {
+        fromNumber = null;
+        toNumber = null;
+        currency = null;
+        toCurrency = null;
+    }
+}
@@ -0,0 +1,7 @@
+package homework1.ledger;
+
+public enum LedgerEventType {
+    DEPOSIT,
+    WITHDRAWAL,
+    TRANSFER
+}
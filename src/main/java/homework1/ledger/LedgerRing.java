@@ -0,0 +1,151 @@
+package homework1.ledger;
+
+import homework1.domain.Account;
+import homework1.metrics.HotPathMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded multi-producer, single-consumer ring of preallocated events. A publisher claims
+// a sequence with one CAS, fills the slot in place and marks it published; the consumer
+// thread hands published slots to the sink in sequence order. Nothing is allocated on
+// the publishing side. Callers publish after releasing their account locks, so two events
+// for one account may reach the ring out of order; each carries the balances it produced.
+@Component
+@Slf4j
+public class LedgerRing {
+    public enum Backpressure {
+        // Wait for the consumer to free a slot.
+        BLOCK,
+        // Count the event as dropped and return immediately.
+        DROP
+    }
+
+    private static final long IDLE_PARK_NANOS = 100_000;
+    private static final long FULL_PARK_NANOS = 1_000;
+
+    private final LedgerEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private final Backpressure backpressure;
+    private final LedgerSink sink;
+    private final HotPathMetrics metrics;
+    private volatile boolean running;
+    private Thread consumer;
+
+    public LedgerRing(@Value("${bank.ledger.capacity:65536}") int capacity,
+                      @Value("${bank.ledger.backpressure:BLOCK}") Backpressure backpressure,
+                      LedgerSink sink, HotPathMetrics metrics) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ledger capacity must be a power of two: " + capacity);
+        }
+        this.slots = new LedgerEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.backpressure = backpressure;
+        this.sink = sink;
+        this.metrics = metrics;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new LedgerEvent();
+            published.set(i, -1);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        consumer = new Thread(this::consume, "ledger-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join();
+    }
+
+    public void deposit(Account account, long amountMinorUnits, long balanceMinorUnits) {
+        publish(LedgerEventType.DEPOSIT, account, null, amountMinorUnits, 0, balanceMinorUnits, 0);
+    }
+
+    public void withdrawal(Account account, long amountMinorUnits, long balanceMinorUnits) {
+        publish(LedgerEventType.WITHDRAWAL, account, null, amountMinorUnits, 0, balanceMinorUnits, 0);
+    }
+
+    // amountMinorUnits is debited in the source currency, creditedMinorUnits credited in the
+    // destination currency; they differ whenever the two accounts' currencies do.
+    public void transfer(Account from, Account to, long amountMinorUnits, long creditedMinorUnits,
+                         long fromBalanceMinorUnits, long toBalanceMinorUnits) {
+        publish(LedgerEventType.TRANSFER, from, to, amountMinorUnits, creditedMinorUnits,
+                fromBalanceMinorUnits, toBalanceMinorUnits);
+    }
+
+    private void publish(LedgerEventType type, Account from, Account to, long amountMinorUnits,
+                         long creditedMinorUnits, long fromBalanceMinorUnits, long toBalanceMinorUnits) {
+        long sequence = claim();
+        if (sequence < 0) {
+            metrics.ledgerDropped();
+            return;
+        }
+        slots[(int) sequence & mask].set(type, from.getNumber(), to == null ? null : to.getNumber(),
+                from.getCurrency(), amountMinorUnits, to == null ? null : to.getCurrency(), creditedMinorUnits,
+                fromBalanceMinorUnits, toBalanceMinorUnits);
+        published.setRelease((int) sequence & mask, sequence);
+    }
+
+    private long claim() {
+        if (backpressure == Backpressure.DROP) {
+            while (true) {
+                long sequence = claimed.get();
+                if (sequence - consumed >= slots.length) {
+                    return -1;
+                }
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            }
+        }
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= slots.length) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        return sequence;
+    }
+
+    // Keeps draining after stop() until every claimed slot has been handed to the sink.
+    private void consume() {
+        long next = 0;
+        boolean pending = false;
+        while (running || next < claimed.get()) {
+            int index = (int) next & mask;
+            if (published.getAcquire(index) == next) {
+                LedgerEvent event = slots[index];
+                try {
+                    sink.accept(event);
+                } catch (RuntimeException e) {
+                    log.error("Ledger sink failed for event {}", next, e);
+                }
+                event.clear();
+                consumed = ++next;
+                pending = true;
+            } else {
+                if (pending) {
+                    sink.endOfBatch();
+                    pending = false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        sink.endOfBatch();
+    }
+}
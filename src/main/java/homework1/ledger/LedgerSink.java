@@ -0,0 +1,10 @@
+package homework1.ledger;
+
+// Called from the single consumer thread only.
+public interface LedgerSink {
+    void accept(LedgerEvent event);
+
+    // Invoked once the ring has been drained, to flush anything batched by accept.
+    default void endOfBatch() {
+    }
+}
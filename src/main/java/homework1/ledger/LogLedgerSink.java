@@ -0,0 +1,23 @@
+package homework1.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j(topic = "homework1.ledger.audit")
+public class LogLedgerSink implements LedgerSink {
+
+    @Override
+    public void accept(LedgerEvent event) {
+        if (event.getType() == LedgerEventType.TRANSFER) {
+            log.info("type={} at={} from={} to={} currency={} amount={} toCurrency={} credited={} fromBalance={} toBalance={}",
+                    event.getType(), event.getTimestampMillis(), event.getFromNumber(), event.getToNumber(),
+                    event.getCurrency(), event.getAmountMinorUnits(), event.getToCurrency(),
+                    event.getCreditedMinorUnits(), event.getFromBalanceMinorUnits(), event.getToBalanceMinorUnits());
+        } else {
+            log.info("type={} at={} account={} currency={} amount={} balance={}",
+                    event.getType(), event.getTimestampMillis(), event.getFromNumber(),
+                    event.getCurrency(), event.getAmountMinorUnits(), event.getFromBalanceMinorUnits());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package homework1.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// Every meter is registered once up front; the hot paths only call record/increment on
+// the cached instances, which does not allocate and does not touch the registry.
+@Component
+public class HotPathMetrics {
+    private static final String OPERATION_TIMER = "bank.operation";
+
+    private final Timer findByNumber;
+    private final Timer getById;
+    private final Timer deposit;
+    private final Timer withdraw;
+    private final Timer transfer;
+    private final Timer lockWait;
+    private final Counter rejectedTransfers;
+    private final Counter rejectedWithdrawals;
+    private final Counter ledgerDropped;
+    private final Counter rateLimited;
+
+    public HotPathMetrics(MeterRegistry registry) {
+        findByNumber = operationTimer(registry, "findByNumber");
+        getById = operationTimer(registry, "getById");
+        deposit = operationTimer(registry, "deposit");
+        withdraw = operationTimer(registry, "withdraw");
+        transfer = operationTimer(registry, "transfer");
+        lockWait = Timer.builder("bank.lock.wait")
+                .description("Time spent waiting for a contended account lock")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .register(registry);
+        rejectedTransfers = Counter.builder("bank.rejected")
+                .tag("operation", "transfer")
+                .register(registry);
+        rejectedWithdrawals = Counter.builder("bank.rejected")
+                .tag("operation", "withdraw")
+                .register(registry);
+        ledgerDropped = Counter.builder("bank.ledger.dropped")
+                .description("Ledger events discarded because the ring was full")
+                .register(registry);
+        rateLimited = Counter.builder("bank.rate.limited")
+                .description("Requests answered 429 by the per-account and per-customer rate limits")
+                .register(registry);
+    }
+
+    private static Timer operationTimer(MeterRegistry registry, String operation) {
+        return Timer.builder(OPERATION_TIMER)
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static void stop(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void findByNumber(long startNanos) {
+        stop(findByNumber, startNanos);
+    }
+
+    public void getById(long startNanos) {
+        stop(getById, startNanos);
+    }
+
+    public void deposit(long startNanos) {
+        stop(deposit, startNanos);
+    }
+
+    public void withdraw(long startNanos) {
+        stop(withdraw, startNanos);
+    }
+
+    public void transfer(long startNanos) {
+        stop(transfer, startNanos);
+    }
+
+    public void lockWait(long startNanos) {
+        stop(lockWait, startNanos);
+    }
+
+    public void rejectedTransfer() {
+        rejectedTransfers.increment();
+    }
+
+    public void rejectedWithdrawal() {
+        rejectedWithdrawals.increment();
+    }
+
+    public void ledgerDropped() {
+        ledgerDropped.increment();
+    }
+
+    public void rateLimited() {
+        rateLimited.increment();
+    }
+}
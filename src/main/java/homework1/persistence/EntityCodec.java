@@ -0,0 +1,101 @@
+package homework1.persistence;
+
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.domain.Customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Binary layout shared by journal records and snapshot entries. Strings are written as
+// an int byte length (-1 for null) followed by UTF-8 bytes.
+final class EntityCodec {
+    private static final int NO_AGE = Integer.MIN_VALUE;
+    private static final long NO_CUSTOMER = Long.MIN_VALUE;
+
+    record CustomerState(long id, String name, String email, Integer age) {
+    }
+
+    record AccountState(long id, String number, Currency currency, Long customerId, long balanceMinorUnits) {
+    }
+
+    private EntityCodec() {
+    }
+
+    static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int stringSize(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    static void putString(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(value.length);
+            out.put(value);
+        }
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int customerSize(byte[] name, byte[] email) {
+        return Long.BYTES + stringSize(name) + stringSize(email) + Integer.BYTES;
+    }
+
+    static void putCustomer(ByteBuffer out, Customer customer, byte[] name, byte[] email) {
+        out.putLong(customer.getId());
+        putString(out, name);
+        putString(out, email);
+        out.putInt(customer.getAge() == null ? NO_AGE : customer.getAge());
+    }
+
+    static CustomerState getCustomer(ByteBuffer in) {
+        long id = in.getLong();
+        String name = getString(in);
+        String email = getString(in);
+        int age = in.getInt();
+        return new CustomerState(id, name, email, age == NO_AGE ? null : age);
+    }
+
+    static int accountSize(byte[] number) {
+        return Long.BYTES + stringSize(number) + Byte.BYTES + Long.BYTES + Long.BYTES;
+    }
+
+    static void putAccount(ByteBuffer out, Account account, byte[] number) {
+        Customer customer = account.getCustomer();
+        out.putLong(account.getId());
+        putString(out, number);
+        out.put((byte) account.getCurrency().ordinal());
+        out.putLong(customer == null || customer.getId() == null ? NO_CUSTOMER : customer.getId());
+        out.putLong(account.getBalanceMinorUnits());
+    }
+
+    static AccountState getAccount(ByteBuffer in) {
+        long id = in.getLong();
+        String number = getString(in);
+        Currency currency = Currency.values()[in.get()];
+        long customerId = in.getLong();
+        long balance = in.getLong();
+        return new AccountState(id, number, currency, customerId == NO_CUSTOMER ? null : customerId, balance);
+    }
+
+    static int balanceSize(byte[] number) {
+        return stringSize(number) + Long.BYTES;
+    }
+
+    static void putBalance(ByteBuffer out, byte[] number, long balanceMinorUnits) {
+        putString(out, number);
+        out.putLong(balanceMinorUnits);
+    }
+}
@@ -0,0 +1,412 @@
+package homework1.persistence;
+
+import homework1.domain.Account;
+import homework1.domain.Customer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only journal split into numbered segments. Appenders encode records into an
+// in-memory buffer under a short lock; a single flusher thread swaps that buffer out,
+// writes it and fsyncs, so every appender that arrived during the previous fsync is made
+// durable by the next one (group commit).
+//
+// Record layout: [int length][byte type][payload][int crc32 of type+payload], where
+// length counts the type byte and the payload.
+@Component
+@ConditionalOnProperty(name = "bank.persistence.enabled", havingValue = "true")
+@Slf4j
+public class FileJournal implements Journal {
+    static final byte CUSTOMER_SAVED = 1;
+    static final byte CUSTOMER_DELETED = 2;
+    static final byte ACCOUNT_SAVED = 3;
+    static final byte ACCOUNT_DELETED = 4;
+    static final byte BALANCE_CHANGED = 5;
+    static final byte TRANSFERRED = 6;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    interface Handler {
+        void customerSaved(EntityCodec.CustomerState customer);
+
+        void customerDeleted(long customerId);
+
+        void accountSaved(EntityCodec.AccountState account);
+
+        void accountDeleted(String number);
+
+        void balanceChanged(String number, long balanceMinorUnits);
+    }
+
+    private final Path directory;
+    private final boolean sync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer active = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer standby = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel;
+    private long segment = -1;
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException failure;
+    private Thread flusher;
+    private volatile boolean running;
+
+    public FileJournal(@Value("${bank.persistence.directory:data}") String directory,
+                       @Value("${bank.persistence.sync:true}") boolean sync) throws IOException {
+        this.directory = Paths.get(directory);
+        this.sync = sync;
+        Files.createDirectories(this.directory);
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    // Starts appending to a fresh segment; called once recovery has replayed the old ones.
+    void open(long firstSegment) throws IOException {
+        lock.lock();
+        try {
+            segment = firstSegment;
+            channel = openSegment(segment);
+            running = true;
+            // A platform thread even with spring.threads.virtual.enabled: force() blocks in
+            // the kernel and would hold a carrier thread for the whole fsync anyway.
+            flusher = new Thread(this::flushLoop, "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    // Closes the current segment with everything appended so far and continues in a new
+    // one. Returns the number of the new segment: every record appended after this call
+    // returns lives in that segment or later.
+    long rotate() throws IOException {
+        lock.lock();
+        ioLock.lock();
+        try {
+            drainActive();
+            channel.force(false);
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        } finally {
+            ioLock.unlock();
+            lock.unlock();
+        }
+    }
+
+    void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        lock.lock();
+        try {
+            running = false;
+            dataAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        ioLock.lock();
+        try {
+            drainActive();
+            channel.force(false);
+            channel.close();
+        } finally {
+            ioLock.unlock();
+            lock.unlock();
+        }
+    }
+
+    // Caller holds both locks, so the flusher is neither swapping nor writing.
+    private void drainActive() throws IOException {
+        active.flip();
+        while (active.hasRemaining()) {
+            channel.write(active);
+        }
+        active.clear();
+        durableSequence = appendedSequence;
+        durable.signalAll();
+        spaceAvailable.signalAll();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchSequence;
+            lock.lock();
+            try {
+                while (running && active.position() == 0) {
+                    dataAvailable.awaitUninterruptibly();
+                }
+                if (active.position() == 0) {
+                    return;
+                }
+                batch = active;
+                active = standby;
+                standby = batch;
+                batchSequence = appendedSequence;
+                ioLock.lock();
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                log.error("Journal write failed", e);
+                error = e;
+            } finally {
+                batch.clear();
+                ioLock.unlock();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else if (batchSequence > durableSequence) {
+                    durableSequence = batchSequence;
+                }
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the lock. Writes the record header into the active buffer and returns
+    // the offset the record starts at.
+    private int begin(byte type, int payloadSize) {
+        int recordSize = RECORD_OVERHEAD + payloadSize;
+        if (recordSize > BUFFER_SIZE) {
+            throw new IllegalArgumentException("Journal record of " + recordSize + " bytes is too large");
+        }
+        if (!running) {
+            throw new IllegalStateException("Journal is not open");
+        }
+        while (active.remaining() < recordSize) {
+            dataAvailable.signal();
+            spaceAvailable.awaitUninterruptibly();
+        }
+        int recordStart = active.position();
+        active.putInt(Byte.BYTES + payloadSize);
+        active.put(type);
+        return recordStart;
+    }
+
+    private long end(int recordStart) {
+        int crcStart = recordStart + Integer.BYTES;
+        crc.reset();
+        crc.update(active.slice(crcStart, active.position() - crcStart));
+        active.putInt((int) crc.getValue());
+        dataAvailable.signal();
+        return ++appendedSequence;
+    }
+
+    @Override
+    public long customerSaved(Customer customer) {
+        byte[] name = EntityCodec.utf8(customer.getName());
+        byte[] email = EntityCodec.utf8(customer.getEmail());
+        lock.lock();
+        try {
+            int start = begin(CUSTOMER_SAVED, EntityCodec.customerSize(name, email));
+            EntityCodec.putCustomer(active, customer, name, email);
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long customerDeleted(Long customerId) {
+        lock.lock();
+        try {
+            int start = begin(CUSTOMER_DELETED, Long.BYTES);
+            active.putLong(customerId);
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long accountSaved(Account account) {
+        byte[] number = EntityCodec.utf8(account.getNumber());
+        lock.lock();
+        try {
+            int start = begin(ACCOUNT_SAVED, EntityCodec.accountSize(number));
+            EntityCodec.putAccount(active, account, number);
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long accountDeleted(Account account) {
+        byte[] number = EntityCodec.utf8(account.getNumber());
+        lock.lock();
+        try {
+            int start = begin(ACCOUNT_DELETED, EntityCodec.stringSize(number));
+            EntityCodec.putString(active, number);
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long balanceChanged(Account account) {
+        byte[] number = EntityCodec.utf8(account.getNumber());
+        lock.lock();
+        try {
+            int start = begin(BALANCE_CHANGED, EntityCodec.balanceSize(number));
+            EntityCodec.putBalance(active, number, account.getBalanceMinorUnits());
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Both balances go into one record, so a transfer is either replayed whole or not at all.
+    @Override
+    public long transferred(Account from, Account to) {
+        byte[] fromNumber = EntityCodec.utf8(from.getNumber());
+        byte[] toNumber = EntityCodec.utf8(to.getNumber());
+        lock.lock();
+        try {
+            int start = begin(TRANSFERRED, EntityCodec.balanceSize(fromNumber) + EntityCodec.balanceSize(toNumber));
+            EntityCodec.putBalance(active, fromNumber, from.getBalanceMinorUnits());
+            EntityCodec.putBalance(active, toNumber, to.getBalanceMinorUnits());
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+        if (!sync) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableSequence < sequence && failure == null) {
+                durable.awaitUninterruptibly();
+            }
+            if (durableSequence < sequence) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Replays one segment and returns the length of its valid prefix. A torn or corrupt
+    // record ends the replay: everything after it was never acknowledged as durable.
+    static long replay(Path path, Handler handler) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (MappedFileReader reader = new MappedFileReader(path)) {
+            while (true) {
+                long recordStart = reader.position();
+                ByteBuffer in = reader.require(Integer.BYTES);
+                if (in == null) {
+                    return recordStart;
+                }
+                int length = in.getInt(in.position());
+                if (length <= 0 || length > BUFFER_SIZE) {
+                    return recordStart;
+                }
+                in = reader.require(Integer.BYTES + length + Integer.BYTES);
+                if (in == null) {
+                    return recordStart;
+                }
+                int bodyStart = in.position() + Integer.BYTES;
+                checksum.reset();
+                checksum.update(in.slice(bodyStart, length));
+                if ((int) checksum.getValue() != in.getInt(bodyStart + length)) {
+                    return recordStart;
+                }
+                in.position(bodyStart);
+                byte type = in.get();
+                apply(type, in, handler);
+                in.position(bodyStart + length + Integer.BYTES);
+            }
+        }
+    }
+
+    private static void apply(byte type, ByteBuffer in, Handler handler) {
+        switch (type) {
+            case CUSTOMER_SAVED -> handler.customerSaved(EntityCodec.getCustomer(in));
+            case CUSTOMER_DELETED -> handler.customerDeleted(in.getLong());
+            case ACCOUNT_SAVED -> handler.accountSaved(EntityCodec.getAccount(in));
+            case ACCOUNT_DELETED -> handler.accountDeleted(EntityCodec.getString(in));
+            case BALANCE_CHANGED -> handler.balanceChanged(EntityCodec.getString(in), in.getLong());
+            case TRANSFERRED -> {
+                handler.balanceChanged(EntityCodec.getString(in), in.getLong());
+                handler.balanceChanged(EntityCodec.getString(in), in.getLong());
+            }
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+}
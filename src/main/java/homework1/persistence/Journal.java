@@ -0,0 +1,24 @@
+package homework1.persistence;
+
+import homework1.domain.Account;
+import homework1.domain.Customer;
+
+// Append methods record the state of an entity as it is at the moment of the call and
+// return a sequence number; awaitDurable blocks until that record has reached the disk.
+// Callers append while they still hold whatever lock orders the mutation and wait for
+// durability only after releasing it, so one fsync covers everything queued meanwhile.
+public interface Journal {
+    long customerSaved(Customer customer);
+
+    long customerDeleted(Long customerId);
+
+    long accountSaved(Account account);
+
+    long accountDeleted(Account account);
+
+    long balanceChanged(Account account);
+
+    long transferred(Account from, Account to);
+
+    void awaitDurable(long sequence);
+}
@@ -0,0 +1,52 @@
+package homework1.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Sequential reader over a file mapped in 64 MiB windows. require(n) remaps at the
+// current offset whenever fewer than n bytes are left in the window.
+final class MappedFileReader implements Closeable {
+    private static final long WINDOW = 64L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedFileReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    long position() {
+        return window == null ? 0 : windowStart + window.position();
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Returns null when the file ends before n more bytes.
+    ByteBuffer require(int bytes) throws IOException {
+        if (window != null && window.remaining() >= bytes) {
+            return window;
+        }
+        long start = position();
+        if (size - start < bytes) {
+            return null;
+        }
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(Math.max(WINDOW, bytes), size - start));
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,54 @@
+package homework1.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Sequential writer over a file mapped in 64 MiB windows; finish() cuts the file back
+// to the bytes actually written.
+final class MappedFileWriter implements Closeable {
+    private static final long WINDOW = 64L << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedFileWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    long position() {
+        return window == null ? 0 : windowStart + window.position();
+    }
+
+    ByteBuffer reserve(int bytes) throws IOException {
+        if (window == null || window.remaining() < bytes) {
+            long start = position();
+            if (window != null) {
+                window.force();
+            }
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW, bytes));
+        }
+        return window;
+    }
+
+    void finish() throws IOException {
+        long length = position();
+        if (window != null) {
+            window.force();
+        }
+        channel.truncate(length);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
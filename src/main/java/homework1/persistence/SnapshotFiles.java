@@ -0,0 +1,148 @@
+package homework1.persistence;
+
+import homework1.domain.Account;
+import homework1.domain.Customer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// A snapshot named after segment N holds the whole store as of some moment after segment
+// N was opened, so recovery loads it and replays segments N and later. The replayed
+// records carry absolute values, which makes re-applying changes the snapshot already
+// contains harmless.
+//
+// Layout: [long magic][int version] then entries [byte kind][entity], a 0 kind as end
+// marker and a long crc32 over all entry bytes.
+final class SnapshotFiles {
+    private static final long MAGIC = 0x42414E4B534E4150L;
+    private static final int VERSION = 1;
+    private static final int HEADER = Long.BYTES + Integer.BYTES;
+    private static final byte END = 0;
+    private static final byte CUSTOMER = 1;
+    private static final byte ACCOUNT = 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private SnapshotFiles() {
+    }
+
+    static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+    }
+
+    static List<Long> list(Path directory) throws IOException {
+        List<Long> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    // Written to a temporary file and renamed into place once complete and forced, so a
+    // snapshot under its final name is never partial.
+    static void write(Path target, Iterator<Customer> customers, Iterator<Account> accounts) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (MappedFileWriter writer = new MappedFileWriter(temporary)) {
+            ByteBuffer out = writer.reserve(HEADER);
+            out.putLong(MAGIC);
+            out.putInt(VERSION);
+            while (customers.hasNext()) {
+                Customer customer = customers.next();
+                byte[] name = EntityCodec.utf8(customer.getName());
+                byte[] email = EntityCodec.utf8(customer.getEmail());
+                out = writer.reserve(Byte.BYTES + EntityCodec.customerSize(name, email));
+                int start = out.position();
+                out.put(CUSTOMER);
+                EntityCodec.putCustomer(out, customer, name, email);
+                crc.update(out.slice(start, out.position() - start));
+            }
+            while (accounts.hasNext()) {
+                Account account = accounts.next();
+                byte[] number = EntityCodec.utf8(account.getNumber());
+                out = writer.reserve(Byte.BYTES + EntityCodec.accountSize(number));
+                int start = out.position();
+                out.put(ACCOUNT);
+                EntityCodec.putAccount(out, account, number);
+                crc.update(out.slice(start, out.position() - start));
+            }
+            out = writer.reserve(Byte.BYTES + Long.BYTES);
+            out.put(END);
+            out.putLong(crc.getValue());
+            writer.finish();
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename only survives a crash once the directory entry is on disk, and the
+        // journal segments this snapshot replaces are deleted right after it returns.
+        try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+    }
+
+    // Verifies the checksum in a first pass and only then feeds entries to the handler,
+    // so a damaged snapshot is rejected without touching the store.
+    static boolean read(Path path, FileJournal.Handler handler) throws IOException {
+        try {
+            if (!scan(path, null)) {
+                return false;
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+        return scan(path, handler);
+    }
+
+    private static boolean scan(Path path, FileJournal.Handler handler) throws IOException {
+        CRC32 crc = new CRC32();
+        try (MappedFileReader reader = new MappedFileReader(path)) {
+            ByteBuffer in = reader.require(HEADER);
+            if (in == null || in.getLong() != MAGIC || in.getInt() != VERSION) {
+                return false;
+            }
+            while (true) {
+                in = reader.require(Byte.BYTES + Long.BYTES);
+                if (in == null) {
+                    return false;
+                }
+                byte kind = in.get(in.position());
+                if (kind == END) {
+                    in.get();
+                    return in.getLong() == crc.getValue();
+                }
+                // Entries are small; make sure a whole one sits in the window before decoding.
+                int remaining = (int) Math.min(reader.size() - reader.position(), 1 << 20);
+                in = reader.require(remaining);
+                int start = in.position();
+                in.get();
+                if (kind == CUSTOMER) {
+                    EntityCodec.CustomerState customer = EntityCodec.getCustomer(in);
+                    if (handler != null) {
+                        handler.customerSaved(customer);
+                    }
+                } else if (kind == ACCOUNT) {
+                    EntityCodec.AccountState account = EntityCodec.getAccount(in);
+                    if (handler != null) {
+                        handler.accountSaved(account);
+                    }
+                } else {
+                    return false;
+                }
+                crc.update(in.slice(start, in.position() - start));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package homework1.persistence;
+
+import homework1.dao.AccountDao;
+import homework1.dao.CustomerDao;
+import homework1.dao.CustomerUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StoreBootstrap {
+
+    private final CustomerDao customerDao;
+    private final AccountDao accountDao;
+    private final ObjectProvider<PersistenceManager> persistenceManager;
+
+    // Runs after recovery (PersistenceManager is resolved first); the sample customers
+    // are only created for a store that came up empty.
+    @PostConstruct
+    void seedIfEmpty() {
+        PersistenceManager persistence = persistenceManager.getIfAvailable();
+        if (persistence != null && persistence.hasRecoveredState()) {
+            return;
+        }
+        CustomerUtils.seedDefaults(customerDao, accountDao);
+        log.info("Seeded default customers and accounts");
+    }
+}
@@ -1,14 +1,32 @@
 package homework1.resource;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
-import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import homework1.dao.VersionConflictException;
 import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.dto.CurrencyStatsDTO;
+import homework1.dto.TransactionDTO;
+import homework1.dto.TransferDTO;
+import homework1.dto.TransferResultDTO;
 import homework1.service.AccountService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -21,28 +39,88 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 @RequestMapping("/accounts")         /* http://localhost:9000/accounts */
 @CrossOrigin(origins = "http://localhost:3000")
 @Slf4j
+@UseResponseView(ResponseView.ACCOUNT_WITH_CUSTOMER)
 public class AccountController {
+    private static final int MAX_TRANSFER_BATCH = 10_000;
 
     private final AccountService accountService;
+    private final ResponseViewWriters responseViewWriters;
     private final ObjectMapper objectMapper;
+    private final IdempotencyCache idempotencyCache;
+    private final RateLimits rateLimits;
 
-    @ModelAttribute
-    public void configureObjectMapper() {
-        SimpleFilterProvider filters = new SimpleFilterProvider();
-        filters.addFilter("accountFilter", SimpleBeanPropertyFilter.serializeAll());
-        filters.addFilter("customerFilter", SimpleBeanPropertyFilter.serializeAllExcept("accounts"));
-        objectMapper.setFilterProvider(filters);
+    @Operation(summary = "Get all accounts, or one page of them when after/limit is given")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved accounts",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Account.class))}),
+            @ApiResponse(responseCode = "304", description = "Accounts unchanged since the given ETag",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid limit supplied",
+                    content = @Content)
+    })
+    @GetMapping
+    public ResponseEntity<?> getAll(@RequestParam(required = false) Long after,
+                                    @RequestParam(required = false) Integer limit,
+                                    WebRequest webRequest) {
+        if (webRequest.checkNotModified(ETags.collection(accountService.version()))) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(accountService.findAll());
+        }
+        try {
+            int pageSize = Paging.clampLimit(limit);
+            return Paging.page(accountService.findPage(after, pageSize), pageSize, Account::getId);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid page request: " + e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
-    @Operation(summary = "Get all accounts")
+    @Operation(summary = "Stream all accounts as a JSON array")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved all accounts",
+            @ApiResponse(responseCode = "200", description = "Accounts streamed",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Account.class))})
     })
-    @GetMapping
-    public List<Account> getAll() {
-        return accountService.findAll();
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) Long after) {
+        return Paging.stream(responseViewWriters.writer(ResponseView.ACCOUNT_WITH_CUSTOMER), accountService.iterateAfter(after));
+    }
+
+    @Operation(summary = "Export every account with its balance at one point in time, as NDJSON or CSV")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Accounts exported",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "400", description = "Unknown format or currency",
+                    content = @Content)
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                    @RequestParam(required = false) String currency,
+                                    @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        try {
+            Currency filter = currency != null ? Currency.fromValue(currency) : null;
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            return AccountExport.export(accountService, objectMapper.getFactory(), format, filter, gzip);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid export request: " + e.getMessage());
+            // Streaming endpoints must keep the StreamingResponseBody type, so the error is one too.
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(out -> out.write(message));
+        }
+    }
+
+    @Operation(summary = "Get the total balance, account count and balance range per currency")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Current per-currency statistics",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CurrencyStatsDTO.class))})
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<List<CurrencyStatsDTO>> stats() {
+        return ResponseEntity.ok(accountService.stats());
     }
 
     @Operation(summary = "Get an account by its ID")
@@ -50,43 +128,84 @@ public class AccountController {
             @ApiResponse(responseCode = "200", description = "Found the account",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Account.class))}),
+            @ApiResponse(responseCode = "304", description = "Account unchanged since the given ETag",
+                    content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid ID supplied",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Account not found",
                     content = @Content)
     })
     @GetMapping("/{accountNumber}")
-    public ResponseEntity<?> getByNumber(@PathVariable String accountNumber) {
+    public ResponseEntity<?> getByNumber(@PathVariable String accountNumber, WebRequest webRequest) {
         try {
-            return ResponseEntity.ok(accountService.findByNumber(accountNumber));
+            Account account = accountService.findByNumber(accountNumber);
+            if (webRequest.checkNotModified(ETags.account(account))) {
+                return null;
+            }
+            return ResponseEntity.ok(account);
         } catch (RuntimeException e){
             log.error("Account with number " + accountNumber + " not found", e);
             return ResponseEntity.badRequest().body("Account with number " + accountNumber + " not found");
         }
     }
 
+    @Operation(summary = "Get an account's transactions in [from, to), oldest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Transactions in the requested range",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = TransactionDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Account not found or invalid range or limit supplied",
+                    content = @Content)
+    })
+    @GetMapping("/{accountNumber}/transactions")
+    public ResponseEntity<?> transactions(@PathVariable String accountNumber,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                          @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(accountService.transactions(accountNumber, from, to, Paging.clampLimit(limit)));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid transaction history request: " + e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @Operation(summary = "Deposit an amount to an account")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Deposit successful",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Account.class))}),
-            @ApiResponse(responseCode = "400", description = "Account not found",
+            @ApiResponse(responseCode = "400", description = "Account not found or invalid amount supplied",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same Idempotency-Key is still running",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Account changed since the given ETag",
+                    content = @Content),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different request",
                     content = @Content)
     })
     @PutMapping("/deposit/{accountNumber}")
-    public ResponseEntity<?> deposit(@PathVariable String accountNumber, @RequestBody double amount) {
-        try {
-            Account updatedAccount = accountService.deposit(accountNumber, amount);
-            return ResponseEntity.ok(updatedAccount);
-        } catch (IllegalArgumentException e) {
-            if (e.getMessage().contains("not found")) {
-                log.error("Account with number " + accountNumber + " not found", e);
-                return ResponseEntity.badRequest().body("Account with number " + accountNumber + " not found");
-            } else {
-                log.error("Amount for deposit must be greater than 0", e);
-                return ResponseEntity.badRequest().body("Amount for deposit must be greater than 0");
+    public ResponseEntity<?> deposit(@PathVariable String accountNumber, @RequestBody BigDecimal amount,
+                                     @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return idempotencyCache.execute(idempotencyKey, "deposit " + accountNumber + " " + amount.toPlainString() + ifMatchFingerprint(ifMatch),
+                responseViewWriters.writer(ResponseView.ACCOUNT_WITH_CUSTOMER), () -> {
+            try {
+                Account updatedAccount = accountService.deposit(accountNumber, amount, expectedVersion(accountNumber, ifMatch));
+                return ResponseEntity.ok().eTag(ETags.account(updatedAccount)).body(updatedAccount);
+            } catch (VersionConflictException e) {
+                log.error("Conflicting deposit to account " + accountNumber + ": " + e.getMessage());
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Account with number " + accountNumber + " was changed by another request");
+            } catch (IllegalArgumentException e) {
+                if (e.getMessage().contains("not found")) {
+                    log.error("Account with number " + accountNumber + " not found", e);
+                    return ResponseEntity.badRequest().body("Account with number " + accountNumber + " not found");
+                } else {
+                    log.error("Error depositing amount: " + e.getMessage());
+                    return ResponseEntity.badRequest().body(e.getMessage());
+                }
             }
-        }
+        });
     }
 
     @Operation(summary = "Withdraw an amount from an account")
@@ -95,22 +214,46 @@ public class AccountController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Account.class))}),
             @ApiResponse(responseCode = "400", description = "Insufficient balance or account not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same Idempotency-Key is still running",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Account changed since the given ETag",
+                    content = @Content),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different request",
                     content = @Content)
     })
     @PutMapping("/withdrawal/{accountNumber}")
     public ResponseEntity<?> withdraw(@PathVariable String accountNumber,
-                                      @RequestBody double amount) {
-        try {
-            boolean withdrawalSuccessful = accountService.withdraw(accountNumber, amount);
-            if (withdrawalSuccessful) {
-                return ResponseEntity.ok("Withdrawal successful");
-            } else {
-                return ResponseEntity.badRequest().body("Insufficient balance");
+                                      @RequestBody BigDecimal amount,
+                                      @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return idempotencyCache.execute(idempotencyKey, "withdraw " + accountNumber + " " + amount.toPlainString() + ifMatchFingerprint(ifMatch),
+                responseViewWriters.writer(ResponseView.ACCOUNT_WITH_CUSTOMER), () -> {
+            try {
+                boolean withdrawalSuccessful = accountService.withdraw(accountNumber, amount, expectedVersion(accountNumber, ifMatch));
+                if (withdrawalSuccessful) {
+                    return ResponseEntity.ok("Withdrawal successful");
+                } else {
+                    return ResponseEntity.badRequest().body("Insufficient balance");
+                }
+            } catch (VersionConflictException e) {
+                log.error("Conflicting withdrawal from account " + accountNumber + ": " + e.getMessage());
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Account with number " + accountNumber + " was changed by another request");
+            } catch (IllegalArgumentException e) {
+                log.error("Error withdrawing amount: " + e.getMessage());
+                return ResponseEntity.badRequest().body(e.getMessage());
             }
-        } catch (IllegalArgumentException e) {
-            log.error("Error withdrawing amount: " + e.getMessage());
-            return ResponseEntity.badRequest().body(e.getMessage());
-        }
+        });
+    }
+
+    // The account is only looked up here for a conditional request; the version comparison
+    // itself happens in the service, under the account's lock.
+    private Long expectedVersion(String accountNumber, String ifMatch) {
+        return ifMatch == null ? null : ETags.expectedAccountVersion(ifMatch, accountService.findByNumber(accountNumber));
+    }
+
+    private static String ifMatchFingerprint(String ifMatch) {
+        return ifMatch == null ? "" : " if-match " + ifMatch;
     }
 
     @Operation(summary = "Transfer an amount from one account to another")
@@ -119,18 +262,86 @@ public class AccountController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Account.class))}),
             @ApiResponse(responseCode = "400", description = "Account not found or insufficient balance",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same Idempotency-Key is still running",
+                    content = @Content),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different request",
                     content = @Content)
     })
     @PutMapping("/transfer/{fromAccountNumber}/{toAccountNumber}")
     public ResponseEntity<?> transfer(@PathVariable String fromAccountNumber,
                                       @PathVariable String toAccountNumber,
-                                      @RequestBody double amount) {
-        try {
-            accountService.transfer(fromAccountNumber, toAccountNumber, amount);
-            return ResponseEntity.ok("Transfer successful");
-        } catch (IllegalArgumentException e) {
-            log.error("Error transferring amount: " + e.getMessage());
-            return ResponseEntity.badRequest().body(e.getMessage());
+                                      @RequestBody BigDecimal amount,
+                                      @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
+        return idempotencyCache.execute(idempotencyKey,
+                "transfer " + fromAccountNumber + " " + toAccountNumber + " " + amount.toPlainString(),
+                responseViewWriters.writer(ResponseView.ACCOUNT_WITH_CUSTOMER), () -> {
+            try {
+                accountService.transfer(fromAccountNumber, toAccountNumber, amount);
+                return ResponseEntity.ok("Transfer successful");
+            } catch (IllegalArgumentException e) {
+                log.error("Error transferring amount: " + e.getMessage());
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Run a batch of transfers, independent ones in parallel")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see per-item results",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = TransferResultDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Batch is too large",
+                    content = @Content),
+            @ApiResponse(responseCode = "429", description = "An account or customer in the batch is over its rate limit",
+                    content = @Content)
+    })
+    @PostMapping(value = "/transfers/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> transferBatch(@RequestBody List<TransferDTO> transfers) {
+        if (transfers.size() > MAX_TRANSFER_BATCH) {
+            return ResponseEntity.badRequest().body("Batch must not contain more than " + MAX_TRANSFER_BATCH + " transfers");
+        }
+        return runTransferBatch(transfers);
+    }
+
+    @PostMapping(value = "/transfers/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> transferBatchNdjson(InputStream body) throws IOException {
+        List<TransferDTO> transfers = new ArrayList<>();
+        try (MappingIterator<TransferDTO> lines = objectMapper.readerFor(TransferDTO.class).readValues(body)) {
+            while (lines.hasNextValue()) {
+                if (transfers.size() == MAX_TRANSFER_BATCH) {
+                    return ResponseEntity.badRequest().body("Batch must not contain more than " + MAX_TRANSFER_BATCH + " transfers");
+                }
+                transfers.add(lines.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            log.error("Malformed transfer batch: " + e.getOriginalMessage());
+            // Exceptions raised outside the parser carry no location; every line holds one
+            // transfer, so the transfer being read names the line just as well.
+            int line = e.getLocation() != null ? e.getLocation().getLineNr() : transfers.size() + 1;
+            return ResponseEntity.badRequest().body("Malformed transfer at line " + line);
+        }
+        return runTransferBatch(transfers);
+    }
+
+    // The batch names its accounts only in the body, so it is admitted here rather than by
+    // RateLimitInterceptor: one permit per account per transfer, for the whole batch or none.
+    private ResponseEntity<?> runTransferBatch(List<TransferDTO> transfers) {
+        List<String> accountNumbers = new ArrayList<>(2 * transfers.size());
+        for (TransferDTO transfer : transfers) {
+            if (transfer.getFrom() != null) {
+                accountNumbers.add(transfer.getFrom());
+            }
+            if (transfer.getTo() != null) {
+                accountNumbers.add(transfer.getTo());
+            }
+        }
+        RateLimits.Throttle throttle = rateLimits.admit(accountNumbers);
+        if (throttle != null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(throttle.retryAfterSeconds()))
+                    .body(throttle.message());
         }
+        return ResponseEntity.ok(accountService.transferBatch(transfers));
     }
 }
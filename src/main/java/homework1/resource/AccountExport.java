@@ -0,0 +1,104 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.service.AccountService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+// Writes the export row by row straight to the response: one flat record per account
+// (id, number, currency, balance, customerId) as NDJSON or CSV, optionally gzipped.
+final class AccountExport {
+    private static final int GZIP_BUFFER = 64 * 1024;
+
+    private AccountExport() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> export(AccountService accountService, JsonFactory jsonFactory,
+                                                        String format, Currency currency, boolean gzip) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+        StreamingResponseBody body = outputStream -> {
+            OutputStream target = StreamUtils.nonClosing(outputStream);
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(target, GZIP_BUFFER) : null;
+            OutputStream out = gzip ? compressed : target;
+            if (csv) {
+                writeCsv(accountService, currency, out);
+            } else {
+                writeNdjson(accountService, jsonFactory, currency, out);
+            }
+            if (compressed != null) {
+                compressed.finish();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType(ImportLines.TEXT_CSV_VALUE) : MediaType.APPLICATION_NDJSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    private static void writeNdjson(AccountService accountService, JsonFactory jsonFactory, Currency currency,
+                                    OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            accountService.export(currency, (account, balance) -> {
+                generator.writeStartObject();
+                generator.writeNumberField("id", account.getId());
+                generator.writeStringField("number", account.getNumber());
+                generator.writeStringField("currency", account.getCurrency().getValue());
+                generator.writeNumberField("balance", account.getCurrency().fromMinorUnits(balance));
+                generator.writeFieldName("customerId");
+                Long customerId = customerIdOf(account);
+                if (customerId != null) {
+                    generator.writeNumber(customerId);
+                } else {
+                    generator.writeNull();
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    private static void writeCsv(AccountService accountService, Currency currency, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,number,currency,balance,customerId\n");
+        accountService.export(currency, (account, balance) -> {
+            writer.write(String.valueOf(account.getId()));
+            writer.write(',');
+            writer.write(account.getNumber());
+            writer.write(',');
+            writer.write(account.getCurrency().getValue());
+            writer.write(',');
+            writer.write(account.getCurrency().fromMinorUnits(balance).toPlainString());
+            writer.write(',');
+            Long customerId = customerIdOf(account);
+            if (customerId != null) {
+                writer.write(String.valueOf(customerId));
+            }
+            writer.write('\n');
+        });
+        writer.flush();
+    }
+
+    private static Long customerIdOf(Account account) {
+        return account.getCustomer() != null ? account.getCustomer().getId() : null;
+    }
+}
@@ -1,12 +1,14 @@
 package homework1.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
-import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import homework1.dao.VersionConflictException;
 import homework1.domain.Account;
 import homework1.domain.Customer;
 import homework1.dto.AccountDTO;
 import homework1.dto.CustomerDTO;
+import homework1.dto.CustomerImportDTO;
+import homework1.dto.ImportResultDTO;
+import homework1.service.CustomerImport;
 import homework1.service.CustomerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,39 +17,89 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/customers")          /* http://localhost:9000/customers */
 @CrossOrigin(origins = "http://localhost:3000")
 @Slf4j
+@UseResponseView(ResponseView.CUSTOMER_WITH_ACCOUNTS)
 public class CustomerController {
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
 
     private final CustomerService customerService;
+    private final ResponseViewWriters responseViewWriters;
     private final ObjectMapper objectMapper;
 
-    @ModelAttribute
-    public void configureObjectMapper() {
-        SimpleFilterProvider filters = new SimpleFilterProvider();
-        filters.addFilter("customerFilter", SimpleBeanPropertyFilter.serializeAll());
-        filters.addFilter("accountFilter", SimpleBeanPropertyFilter.filterOutAllExcept("number", "currency", "balance"));
-        objectMapper.setFilterProvider(filters);
+    @Operation(summary = "Get all customers, or one page of them when after/limit is given")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved customers",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Customer.class))}),
+            @ApiResponse(responseCode = "304", description = "Customers unchanged since the given ETag",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid limit supplied",
+                    content = @Content)
+    })
+    @GetMapping
+    public ResponseEntity<?> getAllCustomers(@RequestParam(required = false) Long after,
+                                             @RequestParam(required = false) Integer limit,
+                                             WebRequest webRequest) {
+        if (webRequest.checkNotModified(ETags.collection(customerService.version()))) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(customerService.findAll());
+        }
+        try {
+            int pageSize = Paging.clampLimit(limit);
+            return Paging.page(customerService.findPage(after, pageSize), pageSize, Customer::getId);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid page request: " + e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
-    @Operation(summary = "Get all customers")
+    @Operation(summary = "Stream all customers as a JSON array")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved all customers",
+            @ApiResponse(responseCode = "200", description = "Customers streamed",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Customer.class))})
     })
-    @GetMapping
-    public List<Customer> getAllCustomers() {
-        customerService.assignAccountsToCustomers();
-        return customerService.findAll();
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) Long after) {
+        return Paging.stream(responseViewWriters.writer(ResponseView.CUSTOMER_WITH_ACCOUNTS), customerService.iterateAfter(after));
+    }
+
+    @Operation(summary = "Find customers whose name, any word of the name, or email starts with the query")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Best matches first",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Customer.class))}),
+            @ApiResponse(responseCode = "400", description = "Empty query or invalid limit supplied",
+                    content = @Content)
+    })
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body("Search query must not be empty");
+        }
+        if (limit != null && limit <= 0) {
+            return ResponseEntity.badRequest().body("limit must be greater than 0");
+        }
+        int resultLimit = limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        return ResponseEntity.ok(customerService.search(q, resultLimit));
     }
 
     @Operation(summary = "Get a customer by its ID")
@@ -55,16 +107,21 @@ public class CustomerController {
             @ApiResponse(responseCode = "200", description = "Found the customer",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Customer.class))}),
+            @ApiResponse(responseCode = "304", description = "Customer unchanged since the given ETag",
+                    content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid ID supplied",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Customer not found",
                     content = @Content)
     })
     @GetMapping("/{customerId}")
-    public ResponseEntity<?> getById(@PathVariable Long customerId) {
+    public ResponseEntity<?> getById(@PathVariable Long customerId, WebRequest webRequest) {
         try {
-            customerService.assignAccountsToCustomers();
-            return ResponseEntity.ok(customerService.getById(customerId));
+            Customer customer = customerService.getById(customerId);
+            if (webRequest.checkNotModified(ETags.customer(customer))) {
+                return null;
+            }
+            return ResponseEntity.ok(customer);
         } catch (RuntimeException e) {
             log.error("Customer not found with ID " + customerId, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Customer with ID " + customerId + " not found");
@@ -85,7 +142,27 @@ public class CustomerController {
         return customerService.save(customer);
     }
 
-    @Operation(summary = "Update a customer by its ID")
+    @Operation(summary = "Import customers with their accounts from an NDJSON or CSV body")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished, see per-line errors",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ImportResultDTO.class))})
+    })
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportResultDTO> importNdjson(InputStream body) throws IOException {
+        CustomerImport customerImport = customerService.startImport();
+        ImportLines.ndjson(body, objectMapper.readerFor(CustomerImportDTO.class), customerImport);
+        return ResponseEntity.ok(customerImport.finish());
+    }
+
+    @PostMapping(value = "/import", consumes = ImportLines.TEXT_CSV_VALUE)
+    public ResponseEntity<ImportResultDTO> importCsv(InputStream body) throws IOException {
+        CustomerImport customerImport = customerService.startImport();
+        ImportLines.csv(body, customerImport);
+        return ResponseEntity.ok(customerImport.finish());
+    }
+
+    @Operation(summary = "Update a customer by its ID, only if it still matches If-Match when that is given")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Customer updated",
                     content = {@Content(mediaType = "application/json",
@@ -93,29 +170,22 @@ public class CustomerController {
             @ApiResponse(responseCode = "400", description = "Invalid ID supplied",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Customer not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Customer changed since the given ETag",
                     content = @Content)
     })
     @PutMapping("/id/{customerId}")
     public ResponseEntity<?> update(@PathVariable Long customerId,
-                                    @RequestBody CustomerDTO customerDTO) {
+                                    @RequestBody CustomerDTO customerDTO,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             Customer currentCustomer = customerService.getById(customerId);
-            if (customerDTO.getName() != null) {
-                currentCustomer.setName(customerDTO.getName());
-            }
-            if (customerDTO.getEmail() != null) {
-                currentCustomer.setEmail(customerDTO.getEmail());
-            }
-            if (customerDTO.getAge() != null) {
-                currentCustomer.setAge(customerDTO.getAge());
-            }
-
-            Customer updatedCustomer = customerService.update(currentCustomer);
-            if (updatedCustomer != null) {
-                return ResponseEntity.ok(updatedCustomer);
-            } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Customer with ID " + customerId + " not found");
-            }
+            Long expectedVersion = ETags.expectedCustomerVersion(ifMatch, currentCustomer);
+            Customer updatedCustomer = customerService.update(customerId, customerDTO, expectedVersion);
+            return ResponseEntity.ok().eTag(ETags.customer(updatedCustomer)).body(updatedCustomer);
+        } catch (VersionConflictException e) {
+            log.error("Conflicting update of customer with ID " + customerId + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Customer with ID " + customerId + " was changed by another request");
         } catch (IllegalArgumentException e) {
             log.error("Customer not found with ID " + customerId, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Customer with ID " + customerId + " not found");
@@ -162,7 +232,6 @@ public class CustomerController {
         try {
             Customer customer = customerService.getById(customerId);
             customerService.createAccount(customer.getId(), accountDTO.getCurrency(), accountDTO.getBalance());
-            customerService.update(customer);
             return ResponseEntity.ok(customer);
         } catch (RuntimeException e) {
             log.error("Customer not found with ID " + customerId, e);
@@ -192,7 +261,6 @@ public class CustomerController {
             }
             if (accountToDelete != null) {
                 customerService.deleteAccount(customer.getId(), accountToDelete.getNumber());
-                customerService.update(customer);
                 return ResponseEntity.ok("Account successfully deleted");
             } else {
                 return ResponseEntity.badRequest().body("Account with number " + accountNumber + " not found");
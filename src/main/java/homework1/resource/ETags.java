@@ -0,0 +1,66 @@
+package homework1.resource;
+
+import homework1.domain.Account;
+import homework1.domain.Customer;
+
+// Entity tags derived from version counters, so a conditional GET is answered without
+// serializing anything. Collections use the store-wide stamp; a single account also
+// carries its customer's field version because the account view embeds the customer's fields.
+// Conditional writes go the other way: If-Match is parsed back into the version it names.
+final class ETags {
+    // Names no version at all, so the comparison in the store always fails.
+    static final long NO_MATCH = -1;
+
+    private ETags() {
+    }
+
+    static String collection(long storeVersion) {
+        return "\"s" + storeVersion + "\"";
+    }
+
+    static String account(Account account) {
+        Customer customer = account.getCustomer();
+        return "\"a" + account.getId() + "." + account.getVersion()
+                + (customer != null ? "-c" + customer.getFieldsVersion() : "") + "\"";
+    }
+
+    // Field version first, then the version that also covers the accounts, which the customer
+    // view embeds.
+    static String customer(Customer customer) {
+        return "\"c" + customer.getId() + "." + customer.getFieldsVersion() + "-" + customer.getVersion() + "\"";
+    }
+
+    // The field version an If-Match header expects, so deposits into the customer's accounts
+    // do not turn into conflicts. Null when any version will do (no header or "*").
+    // Only a single strong tag is understood; anything else can never match.
+    static Long expectedCustomerVersion(String ifMatch, Customer customer) {
+        return expectedVersion(ifMatch, "\"c" + customer.getId() + ".");
+    }
+
+    // Only the account's own version is compared: the customer part of its tag moves with
+    // edits of the customer, which would turn unrelated renames into conflicts.
+    static Long expectedAccountVersion(String ifMatch, Account account) {
+        return expectedVersion(ifMatch, "\"a" + account.getId() + ".");
+    }
+
+    private static Long expectedVersion(String ifMatch, String prefix) {
+        if (ifMatch == null) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return null;
+        }
+        if (!tag.startsWith(prefix)) {
+            return NO_MATCH;
+        }
+        int end = prefix.length();
+        while (end < tag.length() && Character.isDigit(tag.charAt(end))) {
+            end++;
+        }
+        if (end == prefix.length() || end - prefix.length() > 18) {
+            return NO_MATCH;
+        }
+        return Long.parseLong(tag, prefix.length(), end, 10);
+    }
+}
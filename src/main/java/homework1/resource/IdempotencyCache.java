@@ -0,0 +1,238 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Remembers the response to every request sent with an Idempotency-Key, so a client retry
+// gets the stored status and body back instead of moving money twice. Keys are spread over
+// independently locked stripes, each an access-ordered map that drops its least recently
+// used entries once the stripe's share of the byte budget is used up, and expired entries
+// whenever they are met. Responses are kept as rendered bytes: replaying a stored Account
+// object would show its current balance, not the one the original request returned. Their
+// headers are kept too, so a replay carries the same ETag or Location as the original.
+@Component
+@Slf4j
+public class IdempotencyCache {
+    public static final String HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int STRIPES = 64;
+    // Rough per-entry cost of the map node, the entry and the key/fingerprint strings' headers.
+    private static final int ENTRY_OVERHEAD = 160;
+    // Rough cost of one stored header's map node and value list.
+    private static final int HEADER_OVERHEAD = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long ttlNanos;
+    private final long stripeBudget;
+
+    public IdempotencyCache(@Value("${bank.idempotency.ttl:PT24H}") Duration ttl,
+                            @Value("${bank.idempotency.max-size:64MB}") DataSize maxSize) {
+        this.ttlNanos = ttl.toNanos();
+        this.stripeBudget = Math.max(1, maxSize.toBytes() / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Runs the action once per key. A repeat with the same fingerprint replays the stored
+    // response, a repeat with a different one is refused with 422, and a repeat arriving
+    // while the first request is still running is refused with 409.
+    public ResponseEntity<?> execute(String key, String fingerprint, ObjectWriter writer,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        Stripe stripe = stripes[stripeOf(key)];
+        Entry pending = new Entry(fingerprint);
+        Entry existing;
+        synchronized (stripe) {
+            existing = stripe.get(key, System.nanoTime());
+            if (existing == null) {
+                stripe.put(key, pending, stripeBudget);
+            }
+        }
+        if (existing != null) {
+            return replay(existing, fingerprint);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            synchronized (stripe) {
+                stripe.remove(key, pending);
+            }
+            throw e;
+        }
+        Entry completed = render(fingerprint, response, writer);
+        synchronized (stripe) {
+            stripe.remove(key, pending);
+            stripe.put(key, completed, stripeBudget);
+        }
+        return completed.toResponse(false);
+    }
+
+    // Whether a response is stored for the key, so a request carrying it would be replayed.
+    public boolean isCompleted(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        Stripe stripe = stripes[stripeOf(key)];
+        synchronized (stripe) {
+            Entry entry = stripe.get(key, System.nanoTime());
+            return entry != null && entry.body != null;
+        }
+    }
+
+    private ResponseEntity<?> replay(Entry existing, String fingerprint) {
+        if (!existing.fingerprint.equals(fingerprint)) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(HEADER + " was already used for a different request");
+        }
+        if (existing.body == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("A request with this " + HEADER + " is still in progress");
+        }
+        return existing.toResponse(true);
+    }
+
+    private Entry render(String fingerprint, ResponseEntity<?> response, ObjectWriter writer) {
+        Object body = response.getBody();
+        MediaType contentType;
+        byte[] bytes;
+        if (body == null) {
+            contentType = null;
+            bytes = new byte[0];
+        } else if (body instanceof String text) {
+            contentType = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+        } else {
+            contentType = MediaType.APPLICATION_JSON;
+            try {
+                bytes = writer.writeValueAsBytes(body);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not render response for replay", e);
+            }
+        }
+        // The body's type and length are set again from the stored bytes.
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.remove(HttpHeaders.CONTENT_TYPE);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        Entry entry = new Entry(fingerprint);
+        entry.complete(response.getStatusCode().value(), contentType, headers, bytes, System.nanoTime() + ttlNanos);
+        return entry;
+    }
+
+    private static int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private int status;
+        private MediaType contentType;
+        private HttpHeaders headers;
+        // Null while the first request is still running.
+        private byte[] body;
+        private long expiresAtNanos = Long.MAX_VALUE;
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private void complete(int status, MediaType contentType, HttpHeaders headers, byte[] body,
+                              long expiresAtNanos) {
+            this.status = status;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private long weight(String key) {
+            long weight = ENTRY_OVERHEAD + 2L * (key.length() + fingerprint.length()) + (body != null ? body.length : 0);
+            if (headers != null) {
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    weight += HEADER_OVERHEAD + 2L * header.getKey().length();
+                    for (String value : header.getValue()) {
+                        weight += 2L * value.length();
+                    }
+                }
+            }
+            return weight;
+        }
+
+        private ResponseEntity<byte[]> toResponse(boolean replayed) {
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(status).headers(headers);
+            if (contentType != null) {
+                response.contentType(contentType);
+            }
+            if (replayed) {
+                response.header(REPLAYED_HEADER, "true");
+            }
+            return response.body(body);
+        }
+    }
+
+    // Guarded by its own monitor.
+    private static final class Stripe {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        private Entry get(String key, long now) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos - now <= 0) {
+                remove(key, entry);
+                return null;
+            }
+            return entry;
+        }
+
+        private void put(String key, Entry entry, long budget) {
+            entries.put(key, entry);
+            bytes += entry.weight(key);
+            long now = System.nanoTime();
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (eldest.hasNext()) {
+                Map.Entry<String, Entry> candidate = eldest.next();
+                Entry value = candidate.getValue();
+                // In-flight entries are never evicted, or a retry could run the action again.
+                boolean evictable = value != entry && value.body != null;
+                if (evictable && (bytes > budget || value.expiresAtNanos - now <= 0)) {
+                    bytes -= value.weight(candidate.getKey());
+                    eldest.remove();
+                } else if (bytes <= budget) {
+                    break;
+                }
+            }
+        }
+
+        private void remove(String key, Entry entry) {
+            if (entries.remove(key, entry)) {
+                bytes -= entry.weight(key);
+            }
+        }
+    }
+}
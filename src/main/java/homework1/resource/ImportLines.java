@@ -0,0 +1,90 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import homework1.domain.Currency;
+import homework1.dto.AccountDTO;
+import homework1.dto.CustomerImportDTO;
+import homework1.service.CustomerImport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Feeds an import body into a CustomerImport one line at a time, so a malformed line is
+// reported with its number and the rest of the body is still imported.
+final class ImportLines {
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private ImportLines() {
+    }
+
+    static void ndjson(InputStream body, ObjectReader reader, CustomerImport customerImport) throws IOException {
+        BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                customerImport.add(lineNumber, reader.readValue(line));
+            } catch (JsonProcessingException e) {
+                customerImport.reject(lineNumber, "Malformed record: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    // name,email,age[,currency,balance]... with an optional header row starting with "name".
+    // Fields are plain comma-separated values; quoting is not supported.
+    static void csv(InputStream body, CustomerImport customerImport) throws IOException {
+        BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.regionMatches(true, 0, "name,", 0, 5))) {
+                continue;
+            }
+            try {
+                customerImport.add(lineNumber, parseCsv(line));
+            } catch (IllegalArgumentException e) {
+                customerImport.reject(lineNumber, e.getMessage());
+            }
+        }
+    }
+
+    private static CustomerImportDTO parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length < 3 || (fields.length - 3) % 2 != 0) {
+            throw new IllegalArgumentException("Expected name,email,age followed by currency,balance pairs");
+        }
+        List<AccountDTO> accounts = new ArrayList<>((fields.length - 3) / 2);
+        for (int i = 3; i < fields.length; i += 2) {
+            String balance = fields[i + 1].trim();
+            accounts.add(new AccountDTO(Currency.fromValue(fields[i].trim()),
+                    balance.isEmpty() ? null : parseDecimal(balance)));
+        }
+        return new CustomerImportDTO(fields[0].trim(), fields[1].trim(), parseAge(fields[2].trim()), accounts);
+    }
+
+    private static Integer parseAge(String age) {
+        try {
+            return age.isEmpty() ? null : Integer.valueOf(age);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Age is not a number: " + age);
+        }
+    }
+
+    private static BigDecimal parseDecimal(String amount) {
+        try {
+            return new BigDecimal(amount);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Balance is not a number: " + amount);
+        }
+    }
+}
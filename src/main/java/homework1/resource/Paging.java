@@ -0,0 +1,56 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+final class Paging {
+    static final String NEXT_CURSOR_HEADER = "X-Next-After";
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private Paging() {
+    }
+
+    static int clampLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be greater than 0");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    // A full page advertises the id of its last item as the cursor for the next request;
+    // a short page means the end of the collection was reached.
+    static <T> ResponseEntity<List<T>> page(List<T> items, int limit, Function<T, Long> idOf) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (items.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(idOf.apply(items.get(items.size() - 1))));
+        }
+        return response.body(items);
+    }
+
+    // Writes a JSON array element by element straight to the response, so memory stays
+    // bounded by the serializer buffers rather than by the size of the collection.
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectWriter writer, Iterator<T> items) {
+        ObjectWriter elementWriter = writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter sequence = elementWriter.writeValuesAsArray(StreamUtils.nonClosing(outputStream))) {
+                while (items.hasNext()) {
+                    sequence.write(items.next());
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
@@ -0,0 +1,67 @@
+package homework1.resource;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Admission control for the money-moving endpoints that name their accounts in the path:
+// the accounts, and the customers owning them, must get past their rate limits before the
+// controller runs. A throttled request is answered 429 right here, with Retry-After in
+// whole seconds. The batch endpoint names its accounts in the body and is checked by the
+// controller once it has been read.
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor {
+    static final String[] PATHS = {"/accounts/deposit/**", "/accounts/withdrawal/**", "/accounts/transfer/**"};
+    private static final String[] ACCOUNT_VARIABLES = {"accountNumber", "fromAccountNumber", "toAccountNumber"};
+
+    private final RateLimits rateLimits;
+    private final IdempotencyCache idempotencyCache;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!rateLimits.isEnabled()) {
+            return true;
+        }
+        // A retry of a completed request is answered from the cache and moves no money, so
+        // it is neither charged nor refused.
+        String idempotencyKey = request.getHeader(IdempotencyCache.HEADER);
+        if (idempotencyKey != null && idempotencyCache.isCompleted(idempotencyKey)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null) {
+            return true;
+        }
+        List<String> accountNumbers = new ArrayList<>(ACCOUNT_VARIABLES.length);
+        for (String variable : ACCOUNT_VARIABLES) {
+            String accountNumber = variables.get(variable);
+            if (accountNumber != null) {
+                accountNumbers.add(accountNumber);
+            }
+        }
+        RateLimits.Throttle throttle = rateLimits.admit(accountNumbers);
+        if (throttle == null) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(throttle.retryAfterSeconds()));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getOutputStream().write(throttle.message().getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+}
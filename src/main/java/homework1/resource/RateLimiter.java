@@ -0,0 +1,61 @@
+package homework1.resource;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Token bucket in its GCRA form: each stripe holds a single "theoretical arrival time",
+// and admitting a request is one CAS moving it forward by the emission interval, so
+// refill needs no timer, no lock and no allocation. Keys are hashed onto a fixed number
+// of stripes; keys sharing a stripe share a budget, which errs on the side of throttling.
+final class RateLimiter {
+    private final AtomicLongArray theoreticalArrival;
+    private final int mask;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int burst;
+    // Times are kept relative to construction, so an empty stripe (0) is always in the past.
+    private final long origin = System.nanoTime();
+
+    RateLimiter(double permitsPerSecond, int burst, int stripes) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate limit and burst must be greater than 0");
+        }
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Rate limit stripes must be a power of two: " + stripes);
+        }
+        this.theoreticalArrival = new AtomicLongArray(stripes);
+        this.mask = stripes - 1;
+        this.emissionIntervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.burst = burst;
+    }
+
+    // Returns 0 if the permits are granted, otherwise how many nanoseconds to wait before a
+    // retry can be. A request for more permits than the burst is granted only into an idle
+    // stripe, and the excess then holds the stripe back, so the long-run rate still holds.
+    long tryAcquire(int keyHash, int permits) {
+        int stripe = stripeOf(keyHash);
+        long now = System.nanoTime() - origin;
+        long checked = Math.min(permits, burst) - 1L;
+        while (true) {
+            long arrival = theoreticalArrival.get(stripe);
+            long start = Math.max(arrival, now);
+            long wait = start + checked * emissionIntervalNanos - now - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(stripe, arrival, start + permits * emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    // Hands back permits granted to a request that was refused further on. If the stripe
+    // has drained in the meantime this leaves it at or before now, which is just as idle.
+    void release(int keyHash, int permits) {
+        theoreticalArrival.addAndGet(stripeOf(keyHash), -permits * emissionIntervalNanos);
+    }
+
+    private int stripeOf(int keyHash) {
+        return (keyHash ^ (keyHash >>> 16)) & mask;
+    }
+}
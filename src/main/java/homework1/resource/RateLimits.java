@@ -0,0 +1,126 @@
+package homework1.resource;
+
+import homework1.domain.Account;
+import homework1.domain.Customer;
+import homework1.metrics.HotPathMetrics;
+import homework1.service.AccountService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The per-account and per-customer budgets behind every money-moving request. A request is
+// charged one permit for each account it names and one for that account's customer, all
+// or nothing: permits granted before some limit is hit are handed back, so a refused
+// request leaves every budget as it found it.
+@Component
+@Slf4j
+public class RateLimits {
+    private final boolean enabled;
+    private final RateLimiter accountLimiter;
+    private final RateLimiter customerLimiter;
+    private final AccountService accountService;
+    private final HotPathMetrics metrics;
+
+    public RateLimits(@Value("${bank.rate-limit.enabled:true}") boolean enabled,
+                      @Value("${bank.rate-limit.stripes:4096}") int stripes,
+                      @Value("${bank.rate-limit.account.per-second:100}") double accountPerSecond,
+                      @Value("${bank.rate-limit.account.burst:200}") int accountBurst,
+                      @Value("${bank.rate-limit.customer.per-second:200}") double customerPerSecond,
+                      @Value("${bank.rate-limit.customer.burst:400}") int customerBurst,
+                      AccountService accountService, HotPathMetrics metrics) {
+        this.enabled = enabled;
+        this.accountLimiter = new RateLimiter(accountPerSecond, accountBurst, stripes);
+        this.customerLimiter = new RateLimiter(customerPerSecond, customerBurst, stripes);
+        this.accountService = accountService;
+        this.metrics = metrics;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns null if the request is admitted, otherwise the budget it ran out of.
+    Throttle admit(Collection<String> accountNumbers) {
+        if (!enabled) {
+            return null;
+        }
+        Map<String, Integer> accounts = new LinkedHashMap<>();
+        for (String accountNumber : accountNumbers) {
+            accounts.merge(accountNumber, 1, Integer::sum);
+        }
+        Map<Long, Integer> customers = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> account : accounts.entrySet()) {
+            Long customerId = customerIdOf(account.getKey());
+            if (customerId != null) {
+                customers.merge(customerId, account.getValue(), Integer::sum);
+            }
+        }
+
+        Throttle throttle = null;
+        int accountsCharged = 0;
+        for (Map.Entry<String, Integer> account : accounts.entrySet()) {
+            long wait = accountLimiter.tryAcquire(account.getKey().hashCode(), account.getValue());
+            if (wait > 0) {
+                throttle = new Throttle("account " + account.getKey(), wait);
+                break;
+            }
+            accountsCharged++;
+        }
+        int customersCharged = 0;
+        if (throttle == null) {
+            for (Map.Entry<Long, Integer> customer : customers.entrySet()) {
+                long wait = customerLimiter.tryAcquire(Long.hashCode(customer.getKey()), customer.getValue());
+                if (wait > 0) {
+                    throttle = new Throttle("customer " + customer.getKey(), wait);
+                    break;
+                }
+                customersCharged++;
+            }
+        }
+        if (throttle == null) {
+            return null;
+        }
+
+        for (Map.Entry<String, Integer> account : accounts.entrySet()) {
+            if (accountsCharged-- == 0) {
+                break;
+            }
+            accountLimiter.release(account.getKey().hashCode(), account.getValue());
+        }
+        for (Map.Entry<Long, Integer> customer : customers.entrySet()) {
+            if (customersCharged-- == 0) {
+                break;
+            }
+            customerLimiter.release(Long.hashCode(customer.getKey()), customer.getValue());
+        }
+        metrics.rateLimited();
+        log.warn("Rate limit exceeded for {}", throttle.subject());
+        return throttle;
+    }
+
+    // Unknown accounts are let through; the controller answers them with its own error.
+    private Long customerIdOf(String accountNumber) {
+        try {
+            Account account = accountService.findByNumber(accountNumber);
+            Customer customer = account.getCustomer();
+            return customer != null ? customer.getId() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    record Throttle(String subject, long waitNanos) {
+        long retryAfterSeconds() {
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        }
+
+        String message() {
+            return "Too many requests for " + subject;
+        }
+    }
+}
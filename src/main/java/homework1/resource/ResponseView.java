@@ -0,0 +1,24 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+public enum ResponseView {
+    ACCOUNT_WITH_CUSTOMER(new SimpleFilterProvider()
+            .addFilter("accountFilter", SimpleBeanPropertyFilter.serializeAll())
+            .addFilter("customerFilter", SimpleBeanPropertyFilter.serializeAllExcept("accounts"))),
+    CUSTOMER_WITH_ACCOUNTS(new SimpleFilterProvider()
+            .addFilter("customerFilter", SimpleBeanPropertyFilter.serializeAll())
+            .addFilter("accountFilter", SimpleBeanPropertyFilter.filterOutAllExcept("number", "currency", "balance")));
+
+    private final FilterProvider filters;
+
+    ResponseView(FilterProvider filters) {
+        this.filters = filters;
+    }
+
+    public FilterProvider getFilters() {
+        return filters;
+    }
+}
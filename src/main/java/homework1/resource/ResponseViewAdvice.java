@@ -0,0 +1,50 @@
+package homework1.resource;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@ControllerAdvice
+@RequiredArgsConstructor
+public class ResponseViewAdvice implements ResponseBodyAdvice<Object> {
+
+    private final ResponseViewWriters writers;
+    private final Map<Method, ResponseView> viewsByMethod = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return AbstractJackson2HttpMessageConverter.class.isAssignableFrom(converterType)
+                && returnType.getMethod() != null
+                && viewOf(returnType) != null;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body == null || body instanceof ViewBody) {
+            return body;
+        }
+        return new ViewBody(writers.writer(viewOf(returnType)), body);
+    }
+
+    private ResponseView viewOf(MethodParameter returnType) {
+        return viewsByMethod.computeIfAbsent(returnType.getMethod(), method -> {
+            UseResponseView annotation = method.getAnnotation(UseResponseView.class);
+            if (annotation == null) {
+                annotation = method.getDeclaringClass().getAnnotation(UseResponseView.class);
+            }
+            return annotation != null ? annotation.value() : null;
+        });
+    }
+}
@@ -0,0 +1,25 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Component
+public class ResponseViewWriters {
+    private final Map<ResponseView, ObjectWriter> writers = new EnumMap<>(ResponseView.class);
+
+    // ObjectWriter is immutable, so each view is configured exactly once and the
+    // shared ObjectMapper itself is never reconfigured while serving requests.
+    public ResponseViewWriters(ObjectMapper objectMapper) {
+        for (ResponseView view : ResponseView.values()) {
+            writers.put(view, objectMapper.writer(view.getFilters()));
+        }
+    }
+
+    public ObjectWriter writer(ResponseView view) {
+        return writers.get(view);
+    }
+}
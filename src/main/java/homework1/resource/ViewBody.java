@@ -0,0 +1,25 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+// Lets the regular Jackson message converter write a body through a precomputed
+// view writer: the converter serializes this wrapper, which hands its generator over.
+record ViewBody(ObjectWriter writer, Object value) implements JsonSerializable {
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        writer.writeValue(generator, value);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers,
+                                  TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+}
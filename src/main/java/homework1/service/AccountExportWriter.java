@@ -0,0 +1,11 @@
+package homework1.service;
+
+import homework1.domain.Account;
+
+import java.io.IOException;
+
+public interface AccountExportWriter {
+    // balanceMinorUnits is the balance at the export's cut, which may differ from the
+    // account's current balance.
+    void write(Account account, long balanceMinorUnits) throws IOException;
+}
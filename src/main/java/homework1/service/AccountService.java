@@ -1,8 +1,17 @@
 package homework1.service;
 
 import homework1.domain.Account;
+import homework1.domain.Currency;
 import homework1.domain.Customer;
-
+import homework1.dto.CurrencyStatsDTO;
+import homework1.dto.TransactionDTO;
+import homework1.dto.TransferDTO;
+import homework1.dto.TransferResultDTO;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,15 +26,29 @@ public interface AccountService {
 
     List<Account> findAll();
 
+    List<Account> findPage(Long afterId, int limit);
+
+    Iterator<Account> iterateAfter(Long afterId);
+
     boolean deleteById(Long id);
 
     Account getById(Long id);
 
     Account findByNumber(String accountNumber);
 
-    Account deposit(String number, double amount);
+    long version();
+
+    List<CurrencyStatsDTO> stats();
+
+    List<TransactionDTO> transactions(String accountNumber, Instant from, Instant to, int limit);
+
+    Account deposit(String number, BigDecimal amount, Long expectedVersion);
+
+    boolean withdraw(String accountNumber, BigDecimal amount, Long expectedVersion);
+
+    void transfer(String from, String to, BigDecimal amount);
 
-    boolean withdraw(String accountNumber, double amount);
+    List<TransferResultDTO> transferBatch(List<TransferDTO> transfers);
 
-    void transfer(String from, String to, double amount);
+    void export(Currency currency, AccountExportWriter writer) throws IOException;
 }
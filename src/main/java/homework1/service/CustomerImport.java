@@ -0,0 +1,110 @@
+package homework1.service;
+
+import homework1.dao.AccountDao;
+import homework1.dao.CustomerDao;
+import homework1.domain.Account;
+import homework1.domain.Customer;
+import homework1.dto.AccountDTO;
+import homework1.dto.CustomerImportDTO;
+import homework1.dto.ImportErrorDTO;
+import homework1.dto.ImportResultDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+// One streaming import. Records are validated as they arrive and buffered into batches;
+// each full batch is stored through saveAll, which hands out ids for the whole batch
+// at once. Memory stays bounded by the batch size and the number of reported errors.
+@Slf4j
+public class CustomerImport {
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final CustomerDao customerDao;
+    private final AccountDao accountDao;
+    private final List<Customer> customers = new ArrayList<>(BATCH_SIZE);
+    private final List<Account> accounts = new ArrayList<>(BATCH_SIZE);
+    private final List<ImportErrorDTO> errors = new ArrayList<>();
+    private long imported;
+    private long failed;
+
+    CustomerImport(CustomerDao customerDao, AccountDao accountDao) {
+        this.customerDao = customerDao;
+        this.accountDao = accountDao;
+    }
+
+    public void add(long line, CustomerImportDTO record) {
+        Customer customer;
+        List<Account> customerAccounts = new ArrayList<>();
+        try {
+            customer = toCustomer(record);
+            if (record.getAccounts() != null) {
+                for (AccountDTO accountDTO : record.getAccounts()) {
+                    customerAccounts.add(toAccount(accountDTO, customer));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            reject(line, e.getMessage());
+            return;
+        }
+        customers.add(customer);
+        accounts.addAll(customerAccounts);
+        if (customers.size() == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    public void reject(long line, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new ImportErrorDTO(line, message));
+        }
+    }
+
+    public ImportResultDTO finish() {
+        flush();
+        log.info("Imported {} customers, {} lines rejected", imported, failed);
+        return new ImportResultDTO(imported, failed, errors, failed > errors.size());
+    }
+
+    private void flush() {
+        if (customers.isEmpty()) {
+            return;
+        }
+        customerDao.saveAll(customers);
+        accountDao.saveAll(accounts);
+        imported += customers.size();
+        customers.clear();
+        accounts.clear();
+    }
+
+    private static Customer toCustomer(CustomerImportDTO record) {
+        if (record.getName() == null || record.getName().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (record.getEmail() == null || !record.getEmail().contains("@")) {
+            throw new IllegalArgumentException("Email is invalid: " + record.getEmail());
+        }
+        if (record.getAge() == null || record.getAge() < 0) {
+            throw new IllegalArgumentException("Age must be a non-negative number");
+        }
+        return new Customer(record.getName(), record.getEmail(), record.getAge());
+    }
+
+    private static Account toAccount(AccountDTO accountDTO, Customer customer) {
+        if (accountDTO.getCurrency() == null) {
+            throw new IllegalArgumentException("Account currency is required");
+        }
+        Account account = new Account(accountDTO.getCurrency(), customer);
+        BigDecimal balance = accountDTO.getBalance();
+        if (balance != null) {
+            if (balance.signum() < 0) {
+                throw new IllegalArgumentException("Account balance must not be negative");
+            }
+            account.setBalanceMinorUnits(accountDTO.getCurrency().toMinorUnits(balance));
+        }
+        return account;
+    }
+}
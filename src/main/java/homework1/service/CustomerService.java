@@ -3,7 +3,10 @@ package homework1.service;
 import homework1.domain.Account;
 import homework1.domain.Currency;
 import homework1.domain.Customer;
+import homework1.dto.CustomerDTO;
 
+import java.math.BigDecimal;
+import java.util.Iterator;
 import java.util.List;
 
 public interface CustomerService {
@@ -17,15 +20,23 @@ public interface CustomerService {
 
     List<Customer> findAll();
 
+    List<Customer> findPage(Long afterId, int limit);
+
+    Iterator<Customer> iterateAfter(Long afterId);
+
+    List<Customer> search(String query, int limit);
+
     boolean deleteById(Long id);
 
     Customer getById(Long id);
 
-    Customer update(Customer customer);
+    long version();
+
+    Customer update(Long customerId, CustomerDTO changes, Long expectedVersion);
 
-    void createAccount(Long customerId, Currency currency, double amount);
+    void createAccount(Long customerId, Currency currency, BigDecimal amount);
 
     void deleteAccount(Long customerId, String accountNumber);
 
-    void assignAccountsToCustomers();
+    CustomerImport startImport();
 }
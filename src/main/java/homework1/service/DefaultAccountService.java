@@ -1,16 +1,46 @@
 package homework1.service;
 
 import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.TransactionHistory;
 import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.domain.TransactionType;
+import homework1.dto.CurrencyStatsDTO;
+import homework1.dto.TransactionDTO;
+import homework1.dto.TransferDTO;
+import homework1.dto.TransferResultDTO;
+import homework1.ledger.LedgerRing;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.Journal;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 public class DefaultAccountService implements AccountService {
 
     private final AccountDao accountDao;
+    private final AccountLocks accountLocks;
+    private final HotPathMetrics metrics;
+    private final Journal journal;
+    private final LedgerRing ledger;
+    private final AccountSnapshots snapshots;
+    private final FxRates fxRates;
+    private final TransactionHistory transactionHistory;
+    @Qualifier("applicationTaskExecutor")
+    private final TaskExecutor taskExecutor;
 
     @Override
     public Account save(Account account) {
@@ -37,6 +67,16 @@ public class DefaultAccountService implements AccountService {
         return accountDao.findAll();
     }
 
+    @Override
+    public List<Account> findPage(Long afterId, int limit) {
+        return accountDao.findPage(afterId, limit);
+    }
+
+    @Override
+    public Iterator<Account> iterateAfter(Long afterId) {
+        return accountDao.iterateAfter(afterId);
+    }
+
     @Override
     public boolean deleteById(Long id) {
         return accountDao.deleteById(id);
@@ -53,50 +93,271 @@ public class DefaultAccountService implements AccountService {
     }
 
     @Override
-    public Account deposit(String number, double amount) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Deposit amount must be greater than zero");
+    public long version() {
+        return accountDao.version();
+    }
+
+    @Override
+    public List<CurrencyStatsDTO> stats() {
+        return accountDao.stats();
+    }
+
+    @Override
+    public List<TransactionDTO> transactions(String accountNumber, Instant from, Instant to, int limit) {
+        Account account = accountDao.findByNumber(accountNumber);
+        long fromMillis = from != null ? from.toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("from must not be after to");
         }
+        return transactionHistory.range(account, fromMillis, toMillis, limit);
+    }
 
+    @Override
+    public Account deposit(String number, BigDecimal amount, Long expectedVersion) {
+        long start = System.nanoTime();
+        try {
+            return doDeposit(number, amount, expectedVersion);
+        } finally {
+            metrics.deposit(start);
+        }
+    }
+
+    private Account doDeposit(String number, BigDecimal amount, Long expectedVersion) {
         Account account = accountDao.findByNumber(number);
-        if (account != null) {
-            double balance = account.getBalance();
-            account.setBalance(balance + amount);
-            return account;
-        } else {
-            throw new IllegalArgumentException("Account with number " + number + " not found");
+        long minorUnits = account.getCurrency().toMinorUnits(amount);
+        if (minorUnits <= 0) {
+            throw new IllegalArgumentException("Deposit amount must be greater than zero");
+        }
+
+        int stripe = accountLocks.stripeOf(account.getNumber());
+        long sequence;
+        long balance;
+        accountLocks.lock(stripe);
+        try {
+            accountDao.expectIndexed(account);
+            accountDao.expectVersion(account, expectedVersion);
+            long previousBalance = account.getBalanceMinorUnits();
+            balance = credit(previousBalance, minorUnits);
+            snapshots.beforeBalanceChange(account);
+            account.setBalanceMinorUnits(balance);
+            accountDao.balanceChanged(account, previousBalance);
+            transactionHistory.record(account, TransactionType.DEPOSIT, minorUnits, null);
+            sequence = journal.balanceChanged(account);
+        } finally {
+            accountLocks.unlock(stripe);
         }
+        // Published outside the lock: with BLOCK backpressure a full ring parks the caller,
+        // which must not keep every other account of the stripe waiting.
+        ledger.deposit(account, minorUnits, balance);
+        journal.awaitDurable(sequence);
+        return account;
     }
 
     @Override
-    public boolean withdraw(String accountNumber, double amount) {
+    public boolean withdraw(String accountNumber, BigDecimal amount, Long expectedVersion) {
+        long start = System.nanoTime();
+        try {
+            boolean withdrawn = doWithdraw(accountNumber, amount, expectedVersion);
+            if (!withdrawn) {
+                metrics.rejectedWithdrawal();
+            }
+            return withdrawn;
+        } finally {
+            metrics.withdraw(start);
+        }
+    }
+
+    private boolean doWithdraw(String accountNumber, BigDecimal amount, Long expectedVersion) {
         Account account = accountDao.findByNumber(accountNumber);
-        if (account.getBalance() >= amount && amount > 0) {
-            account.setBalance(account.getBalance() - amount);
-            return true;
-        } else {
+        long minorUnits = account.getCurrency().toMinorUnits(amount);
+        if (minorUnits <= 0) {
             return false;
         }
+
+        int stripe = accountLocks.stripeOf(account.getNumber());
+        long sequence;
+        long balance;
+        accountLocks.lock(stripe);
+        try {
+            accountDao.expectIndexed(account);
+            accountDao.expectVersion(account, expectedVersion);
+            long previousBalance = account.getBalanceMinorUnits();
+            if (previousBalance >= minorUnits) {
+                balance = previousBalance - minorUnits;
+                snapshots.beforeBalanceChange(account);
+                account.setBalanceMinorUnits(balance);
+                accountDao.balanceChanged(account, previousBalance);
+                transactionHistory.record(account, TransactionType.WITHDRAWAL, -minorUnits, null);
+                sequence = journal.balanceChanged(account);
+            } else {
+                return false;
+            }
+        } finally {
+            accountLocks.unlock(stripe);
+        }
+        ledger.withdrawal(account, minorUnits, balance);
+        journal.awaitDurable(sequence);
+        return true;
     }
 
     @Override
-    public void transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+    public void transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        long start = System.nanoTime();
+        try {
+            doTransfer(fromAccountNumber, toAccountNumber, amount);
+        } catch (IllegalArgumentException e) {
+            metrics.rejectedTransfer();
+            throw e;
+        } finally {
+            metrics.transfer(start);
+        }
+    }
+
+    private void doTransfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
         if (fromAccountNumber.equals(toAccountNumber)) {
             throw new IllegalArgumentException("From and To account numbers cannot be the same");
         }
 
-        if (amount <= 0) {
+        Account fromAccount = accountDao.findByNumber(fromAccountNumber);
+        Account toAccount = accountDao.findByNumber(toAccountNumber);
+
+        long minorUnits = fromAccount.getCurrency().toMinorUnits(amount);
+        if (minorUnits <= 0) {
             throw new IllegalArgumentException("Transfer amount must be greater than 0");
         }
+        long creditedMinorUnits = fxRates.convert(minorUnits, fromAccount.getCurrency(), toAccount.getCurrency());
+        if (creditedMinorUnits <= 0) {
+            throw new IllegalArgumentException("Transfer amount is too small to convert to " + toAccount.getCurrency().getValue());
+        }
 
-        Account fromAccount = accountDao.findByNumber(fromAccountNumber);
-        Account toAccount = accountDao.findByNumber(toAccountNumber);
+        int fromStripe = accountLocks.stripeOf(fromAccount.getNumber());
+        int toStripe = accountLocks.stripeOf(toAccount.getNumber());
+        long sequence;
+        long fromBalance;
+        long toBalance;
+        accountLocks.lockBoth(fromStripe, toStripe);
+        try {
+            accountDao.expectIndexed(fromAccount);
+            accountDao.expectIndexed(toAccount);
+            long previousFromBalance = fromAccount.getBalanceMinorUnits();
+            long previousToBalance = toAccount.getBalanceMinorUnits();
+            if (previousFromBalance >= minorUnits) {
+                fromBalance = previousFromBalance - minorUnits;
+                toBalance = credit(previousToBalance, creditedMinorUnits);
+                snapshots.beforeBalanceChange(fromAccount);
+                snapshots.beforeBalanceChange(toAccount);
+                fromAccount.setBalanceMinorUnits(fromBalance);
+                toAccount.setBalanceMinorUnits(toBalance);
+                accountDao.balanceChanged(fromAccount, previousFromBalance);
+                accountDao.balanceChanged(toAccount, previousToBalance);
+                transactionHistory.record(fromAccount, TransactionType.TRANSFER_OUT, -minorUnits, toAccount);
+                transactionHistory.record(toAccount, TransactionType.TRANSFER_IN, creditedMinorUnits, fromAccount);
+                sequence = journal.transferred(fromAccount, toAccount);
+            } else {
+                throw new IllegalArgumentException("Insufficient balance in the from account");
+            }
+        } finally {
+            accountLocks.unlockBoth(fromStripe, toStripe);
+        }
+        ledger.transfer(fromAccount, toAccount, minorUnits, creditedMinorUnits, fromBalance, toBalance);
+        journal.awaitDurable(sequence);
+    }
 
-        if (fromAccount.getBalance() >= amount) {
-            fromAccount.setBalance(fromAccount.getBalance() - amount);
-            toAccount.setBalance(toAccount.getBalance() + amount);
+    @Override
+    public List<TransferResultDTO> transferBatch(List<TransferDTO> transfers) {
+        TransferResultDTO[] results = new TransferResultDTO[transfers.size()];
+        List<int[]> groups = TransferGroups.of(transfers);
+        int workers = Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+        if (workers <= 1) {
+            runTransferGroups(transfers, groups, 0, 1, results);
         } else {
-            throw new IllegalArgumentException("Insufficient balance in the from account");
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+            for (int worker = 0; worker < workers; worker++) {
+                int first = worker;
+                futures[worker] = CompletableFuture.runAsync(
+                        () -> runTransferGroups(transfers, groups, first, workers, results), taskExecutor);
+            }
+            CompletableFuture.allOf(futures).join();
+        }
+        return Arrays.asList(results);
+    }
+
+    // Each worker owns every workers-th group; a group runs sequentially, so transfers
+    // touching the same account keep their submission order.
+    private void runTransferGroups(List<TransferDTO> transfers, List<int[]> groups, int first, int step,
+                                   TransferResultDTO[] results) {
+        for (int group = first; group < groups.size(); group += step) {
+            for (int index : groups.get(group)) {
+                results[index] = transferOne(index, transfers.get(index));
+            }
+        }
+    }
+
+    private TransferResultDTO transferOne(int index, TransferDTO transfer) {
+        try {
+            if (transfer.getFrom() == null || transfer.getTo() == null || transfer.getAmount() == null) {
+                throw new IllegalArgumentException("Transfer must have from, to and amount");
+            }
+            transfer(transfer.getFrom(), transfer.getTo(), transfer.getAmount());
+            return new TransferResultDTO(index, true, "Transfer successful");
+        } catch (IllegalArgumentException e) {
+            return new TransferResultDTO(index, false, e.getMessage());
+        }
+    }
+
+    // Walks live accounts and accounts deleted since the cut side by side in id order, so
+    // the book is written as it was when the snapshot opened, in constant memory.
+    @Override
+    public void export(Currency currency, AccountExportWriter writer) throws IOException {
+        AccountSnapshots.Snapshot snapshot;
+        accountLocks.lockAll();
+        try {
+            snapshot = snapshots.open(accountDao.lastId());
+        } finally {
+            accountLocks.unlockAll();
+        }
+        try {
+            Iterator<Account> live = accountDao.iterateAfter(null);
+            Account nextLive = live.hasNext() ? live.next() : null;
+            long position = 0;
+            while (true) {
+                Map.Entry<Long, Account> nextDeleted = snapshot.deletedSinceCut().higherEntry(position);
+                Account next;
+                if (nextLive != null && nextLive.getId() <= snapshot.lastId()
+                        && (nextDeleted == null || nextLive.getId() <= nextDeleted.getKey())) {
+                    next = nextLive;
+                    nextLive = live.hasNext() ? live.next() : null;
+                } else if (nextDeleted != null && nextDeleted.getKey() <= snapshot.lastId()) {
+                    next = nextDeleted.getValue();
+                } else {
+                    break;
+                }
+                position = next.getId();
+                if (currency == null || next.getCurrency() == currency) {
+                    writer.write(next, balanceAtCut(snapshot, next));
+                }
+            }
+        } finally {
+            snapshots.close(snapshot);
+        }
+    }
+
+    private long balanceAtCut(AccountSnapshots.Snapshot snapshot, Account account) {
+        int stripe = accountLocks.stripeOf(account.getNumber());
+        accountLocks.lock(stripe);
+        try {
+            return snapshot.balanceAtCut(account);
+        } finally {
+            accountLocks.unlock(stripe);
+        }
+    }
+
+    private static long credit(long balance, long minorUnits) {
+        long result = balance + minorUnits;
+        if (((balance ^ result) & (minorUnits ^ result)) < 0) {
+            throw new IllegalArgumentException("Balance overflow");
         }
+        return result;
     }
 }
@@ -2,11 +2,17 @@ package homework1.service;
 
 import homework1.dao.AccountDao;
 import homework1.dao.CustomerDao;
+import homework1.dao.CustomerLocks;
+import homework1.dao.VersionConflictException;
+import java.math.BigDecimal;
+import java.util.Iterator;
 import java.util.List;
 
 import homework1.domain.Account;
 import homework1.domain.Currency;
 import homework1.domain.Customer;
+import homework1.dto.CustomerDTO;
+import homework1.persistence.Journal;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -18,7 +24,8 @@ public class DefaultCustomerService implements CustomerService {
 
     private final CustomerDao customerDao;
     private final AccountDao accountDao;
-    private boolean accountsModified;
+    private final CustomerLocks customerLocks;
+    private final Journal journal;
 
     @Override
     public Customer save(Customer customer) {
@@ -27,12 +34,40 @@ public class DefaultCustomerService implements CustomerService {
 
     @Override
     public boolean delete(Customer customer) {
-        return customerDao.delete(customer);
+        if (customer.getId() == null) {
+            return false;
+        }
+        long sequence;
+        customerLocks.lock(customer.getId());
+        try {
+            sequence = customerDao.remove(customer);
+        } finally {
+            customerLocks.unlock(customer.getId());
+        }
+        if (sequence == CustomerDao.NOT_FOUND) {
+            return false;
+        }
+        journal.awaitDurable(sequence);
+        log.info("Customer deleted: {}", customer);
+        return true;
     }
 
     @Override
     public void deleteAll(List<Customer> customers) {
-        customerDao.deleteAll(customers);
+        log.info("Deleted {} customers", customers.size());
+        long sequence = 0;
+        for (Customer customer : customers) {
+            if (customer.getId() == null) {
+                continue;
+            }
+            customerLocks.lock(customer.getId());
+            try {
+                sequence = Math.max(sequence, customerDao.remove(customer));
+            } finally {
+                customerLocks.unlock(customer.getId());
+            }
+        }
+        journal.awaitDurable(sequence);
     }
 
     @Override
@@ -46,27 +81,42 @@ public class DefaultCustomerService implements CustomerService {
     }
 
     @Override
-    public boolean deleteById(Long id) {
-        Customer customer = customerDao.getById(id);
-        if (customer != null) {
-            // Видаляємо всі акаунти, пов'язані з клієнтом
-            List<Account> customerAccounts = customer.getAccounts();
-            for (Account account : customerAccounts) {
-                accountDao.delete(account);
-            }
+    public List<Customer> findPage(Long afterId, int limit) {
+        return customerDao.findPage(afterId, limit);
+    }
 
-            // Видаляємо самого клієнта
-            boolean deletedCustomer = customerDao.deleteById(id);
+    @Override
+    public Iterator<Customer> iterateAfter(Long afterId) {
+        return customerDao.iterateAfter(afterId);
+    }
 
-            // Оновлюємо дані клієнта у всіх інших акаунтах
-            if (deletedCustomer) {
-                accountDao.updateCustomerData(customer);
-            }
+    @Override
+    public List<Customer> search(String query, int limit) {
+        return customerDao.search(query, limit);
+    }
 
-            return deletedCustomer;
-        } else {
-            throw new IllegalArgumentException("Customer with id " + id + " not found");
+    @Override
+    public boolean deleteById(Long id) {
+        Customer customer = customerDao.getById(id);
+        long accountsSequence;
+        long customerSequence;
+        // Блокування клієнта не дає createAccount додати рахунок між каскадом і видаленням клієнта
+        customerLocks.lock(id);
+        try {
+            // Видаляємо всі акаунти клієнта через зворотний індекс, без перебору всіх акаунтів
+            accountsSequence = accountDao.deleteAllOf(customer);
+            customerSequence = customerDao.remove(customer);
+        } finally {
+            customerLocks.unlock(id);
+        }
+        if (customerSequence == CustomerDao.NOT_FOUND) {
+            log.error("Failed to delete customer with id {}", id);
+            return false;
         }
+        // На запис у журнал чекаємо вже без блокування
+        journal.awaitDurable(Math.max(accountsSequence, customerSequence));
+        log.info("Deleted customer with id {}", id);
+        return true;
     }
 
     @Override
@@ -75,32 +125,42 @@ public class DefaultCustomerService implements CustomerService {
     }
 
     @Override
-    public Customer update(Customer customer) {
-        Customer existingCustomer = customerDao.getById(customer.getId());
-        if (existingCustomer != null) {
-            existingCustomer.setName(customer.getName());
-            existingCustomer.setEmail(customer.getEmail());
-            existingCustomer.setAge(customer.getAge());
-
-            // Оновлення даних клієнта в акаунтах
-            List<Account> updatedAccounts = accountDao.updateCustomerData(existingCustomer);
-
-            // Збереження оновленого клієнта
-            Customer savedCustomer = customerDao.save(existingCustomer);
-
-            // Логування оновлення акаунтів
-            for (Account account : updatedAccounts) {
-                log.info("Updated account for customer {}: {}", existingCustomer.getId(), account);
-            }
+    public long version() {
+        return customerDao.version();
+    }
 
-            return savedCustomer;
-        } else {
-            return null;
+    @Override
+    public Customer update(Long customerId, CustomerDTO changes, Long expectedVersion) {
+        Customer existingCustomer = customerDao.getById(customerId);
+        long sequence;
+        // Оновлення і видалення клієнта йдуть під тим самим блокуванням, тож запис про зміну
+        // не потрапить у журнал після запису про видалення і не відновить клієнта
+        customerLocks.lock(customerId);
+        try {
+            // Акаунти посилаються на той самий екземпляр клієнта, тож копіювати дані в них не потрібно
+            sequence = customerDao.update(existingCustomer, expectedVersion, customer -> {
+                if (changes.getName() != null) {
+                    customer.setName(changes.getName());
+                }
+                if (changes.getEmail() != null) {
+                    customer.setEmail(changes.getEmail());
+                }
+                if (changes.getAge() != null) {
+                    customer.setAge(changes.getAge());
+                }
+            });
+        } finally {
+            customerLocks.unlock(customerId);
+        }
+        if (sequence == CustomerDao.VERSION_CONFLICT) {
+            throw new VersionConflictException("Customer with id " + customerId + " was changed since version " + expectedVersion);
         }
+        journal.awaitDurable(sequence);
+        return existingCustomer;
     }
 
     @Override
-    public void createAccount(Long customerId, Currency currency, double amount) {
+    public void createAccount(Long customerId, Currency currency, BigDecimal amount) {
         Customer customer = customerDao.getById(customerId);
 
         if (customer == null) {
@@ -108,22 +168,27 @@ public class DefaultCustomerService implements CustomerService {
         }
 
         Account account = new Account(currency, customer);
-        account.setBalance(amount);
-
-        // Перевірка наявності акаунта з таким же номером
-        boolean accountExists = customer.getAccounts().stream()
-                .anyMatch(existingAccount -> existingAccount.getNumber().equals(account.getNumber()));
-
-        if (accountExists) {
-            throw new IllegalArgumentException("Account with number " + account.getNumber() + " already exists for customer with id: " + customerId);
+        if (amount != null) {
+            account.setBalanceMinorUnits(currency.toMinorUnits(amount));
         }
 
-        // Додавання нового акаунта до клієнта
-        List<Account> customerAccounts = customer.getAccounts();
-        customerAccounts.add(account);
-
-        // Збереження акаунта в accountDao
-        accountDao.save(account);
+        long sequence;
+        customerLocks.lock(customerId);
+        try {
+            // Клієнта могли видалити, поки ми чекали на блокування
+            if (customerDao.findById(customerId).orElse(null) != customer) {
+                throw new IllegalArgumentException("Customer not found with id: " + customerId);
+            }
+            // Додаємо акаунт до accountDao, який також додає його до акаунтів клієнта
+            sequence = accountDao.add(account);
+        } finally {
+            customerLocks.unlock(customerId);
+        }
+        // Від'ємна послідовність означає, що номер уже зайнятий і нічого не збережено
+        if (sequence >= 0) {
+            journal.awaitDurable(sequence);
+            log.info("Account saved: {}", account);
+        }
     }
 
     @Override
@@ -136,45 +201,15 @@ public class DefaultCustomerService implements CustomerService {
                     .findFirst()
                     .orElseThrow(() -> new IllegalArgumentException("Account with number " + accountNumber + " not found"));
 
-            // Видаляємо акаунт з акаунтів клієнта
-            boolean removed = customer.getAccounts().removeIf(account -> account.getNumber().equals(accountNumber));
-            if (removed) {
-                // Оновлюємо accountDao
-                accountDao.delete(accountToDelete);
-                setAccountsModified(true);
-            }
+            // Видаляємо акаунт з accountDao, який також прибирає його з акаунтів клієнта
+            accountDao.delete(accountToDelete);
         } else {
             throw new IllegalArgumentException("Customer not found with id: " + customerId);
         }
     }
 
     @Override
-    public void assignAccountsToCustomers() {
-        if (isAccountsModified()) {
-            log.warn("Skipping account assignment as accounts were modified.");
-            return;
-        }
-
-        List<Account> allAccounts = accountDao.findAll();
-        List<Customer> allCustomers = customerDao.findAll();
-
-        for (Account account : allAccounts) {
-            Customer customer = account.getCustomer();
-            if (customer != null) {
-                for (Customer cust : allCustomers) {
-                    if (cust.getId().equals(customer.getId())) {
-                        boolean accountExists = cust.getAccounts().stream()
-                                .anyMatch(existingAccount -> existingAccount.getNumber().equals(account.getNumber()));
-
-                        if (!accountExists) {
-                            cust.getAccounts().add(account);
-                        } else {
-                            log.warn("Account with number " + account.getNumber() + " already exists for customer with id: " + customer.getId());
-                        }
-                        break;
-                    }
-                }
-            }
-        }
+    public CustomerImport startImport() {
+        return new CustomerImport(customerDao, accountDao);
     }
 }
@@ -0,0 +1,194 @@
+package homework1.service;
+
+import homework1.domain.Currency;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+// Exchange rates as a dense Currency.ordinal() x ordinal() matrix of minor-unit factors,
+// held as longs scaled by 10^9 so a conversion is integer arithmetic without allocation.
+// A reload builds a complete new matrix and publishes it with one volatile write, so a
+// transfer reads one consistent table without any lock. Rates come from the file at
+// bank.fx.rates-file when it exists, otherwise from the bundled fx-rates.csv, and the
+// file is re-read whenever its modification time changes.
+@Component
+@Slf4j
+public class FxRates {
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final MathContext PRECISION = MathContext.DECIMAL64;
+    private static final String DEFAULT_RATES = "fx-rates.csv";
+    private static final int RATE_SCALE = 9;
+    private static final long RATE_UNIT = 1_000_000_000L;
+    private static final long LOW_32_BITS = 0xFFFF_FFFFL;
+    // Marks a pair without a rate; real factors are always positive.
+    private static final long NO_RATE = 0;
+
+    private final Path ratesFile;
+    private volatile long[][] minorUnitRates;
+    private FileTime loadedModified;
+
+    public FxRates(@Value("${bank.fx.rates-file:fx-rates.csv}") String ratesFile) throws IOException {
+        this.ratesFile = Path.of(ratesFile);
+        if (Files.isRegularFile(this.ratesFile)) {
+            reload();
+        } else {
+            try (InputStream in = new ClassPathResource(DEFAULT_RATES).getInputStream()) {
+                minorUnitRates = parse(in);
+            }
+            log.info("Loaded FX rates from classpath {}", DEFAULT_RATES);
+        }
+    }
+
+    // Converts a non-negative amount in minor units of one currency into minor units of
+    // another, rounding half-even.
+    public long convert(long minorUnits, Currency from, Currency to) {
+        if (from == to) {
+            return minorUnits;
+        }
+        long rate = minorUnitRates[from.ordinal()][to.ordinal()];
+        if (rate == NO_RATE) {
+            throw new IllegalArgumentException("No exchange rate from " + from.getValue() + " to " + to.getValue());
+        }
+        if (minorUnits < 0) {
+            throw new IllegalArgumentException("Amount to convert must not be negative");
+        }
+        return divideByRateUnit(Math.multiplyHigh(minorUnits, rate), minorUnits * rate);
+    }
+
+    // Divides the 128-bit product high:low by 10^9 one 32-bit limb at a time; every partial
+    // remainder is below 2^30, so each step fits in a long.
+    private static long divideByRateUnit(long high, long low) {
+        long remainder = high >>> 32;
+        if (remainder >= RATE_UNIT) {
+            throw new IllegalArgumentException("Converted amount is out of range");
+        }
+        long current = remainder << 32 | (high & LOW_32_BITS);
+        long q2 = current / RATE_UNIT;
+        remainder = current % RATE_UNIT;
+        current = remainder << 32 | (low >>> 32);
+        long q1 = current / RATE_UNIT;
+        remainder = current % RATE_UNIT;
+        current = remainder << 32 | (low & LOW_32_BITS);
+        long q0 = current / RATE_UNIT;
+        remainder = current % RATE_UNIT;
+        if (q2 != 0 || q1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Converted amount is out of range");
+        }
+        long quotient = q1 << 32 | q0;
+        long twice = remainder * 2;
+        if (twice > RATE_UNIT || (twice == RATE_UNIT && (quotient & 1) != 0)) {
+            if (quotient == Long.MAX_VALUE) {
+                throw new IllegalArgumentException("Converted amount is out of range");
+            }
+            quotient++;
+        }
+        return quotient;
+    }
+
+    @Scheduled(fixedDelayString = "${bank.fx.reload-interval:PT10S}")
+    public void reloadIfChanged() {
+        try {
+            if (Files.isRegularFile(ratesFile) && !Files.getLastModifiedTime(ratesFile).equals(loadedModified)) {
+                reload();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Keeping previous FX rates, reload of {} failed: {}", ratesFile, e.getMessage());
+        }
+    }
+
+    private void reload() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(ratesFile);
+        try (InputStream in = Files.newInputStream(ratesFile)) {
+            minorUnitRates = parse(in);
+        }
+        loadedModified = modified;
+        log.info("Loaded FX rates from {}", ratesFile);
+    }
+
+    private static long[][] parse(InputStream in) throws IOException {
+        int n = CURRENCIES.length;
+        BigDecimal[][] rates = new BigDecimal[n][n];
+        BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        int lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected from,to,rate");
+            }
+            Currency from = Currency.fromValue(fields[0].trim());
+            Currency to = Currency.fromValue(fields[1].trim());
+            BigDecimal rate;
+            try {
+                rate = new BigDecimal(fields[2].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": rate is not a number");
+            }
+            if (rate.signum() <= 0) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": rate must be positive");
+            }
+            rates[from.ordinal()][to.ordinal()] = rate;
+        }
+
+        for (int i = 0; i < n; i++) {
+            rates[i][i] = BigDecimal.ONE;
+            for (int j = 0; j < n; j++) {
+                if (rates[i][j] != null && rates[j][i] == null) {
+                    rates[j][i] = BigDecimal.ONE.divide(rates[i][j], PRECISION);
+                }
+            }
+        }
+        // Cross rates through any intermediate currency for pairs still missing.
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (rates[i][j] == null && rates[i][k] != null && rates[k][j] != null) {
+                        rates[i][j] = rates[i][k].multiply(rates[k][j], PRECISION);
+                    }
+                }
+            }
+        }
+
+        long[][] minorUnitRates = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (rates[i][j] != null) {
+                    minorUnitRates[i][j] = scaled(rates[i][j]
+                            .movePointRight(CURRENCIES[j].getFractionDigits() - CURRENCIES[i].getFractionDigits()),
+                            CURRENCIES[i], CURRENCIES[j]);
+                }
+            }
+        }
+        return minorUnitRates;
+    }
+
+    private static long scaled(BigDecimal minorUnitRate, Currency from, Currency to) {
+        try {
+            long rate = minorUnitRate.setScale(RATE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+            if (rate != NO_RATE) {
+                return rate;
+            }
+        } catch (ArithmeticException e) {
+            // Reported below together with rates that round to zero.
+        }
+        throw new IllegalArgumentException("Rate from " + from.getValue() + " to " + to.getValue() + " is out of range");
+    }
+}
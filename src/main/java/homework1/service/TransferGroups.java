@@ -0,0 +1,84 @@
+package homework1.service;
+
+import homework1.dto.TransferDTO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class TransferGroups {
+
+    private TransferGroups() {
+    }
+
+    // Splits a batch into groups of transfer indexes such that two transfers sharing an
+    // account (directly or through a chain of transfers) land in the same group, in
+    // submission order. Different groups touch disjoint accounts and can run in parallel.
+    static List<int[]> of(List<TransferDTO> transfers) {
+        int count = transfers.size();
+        Map<String, Integer> slots = new HashMap<>(count * 2);
+        int[] parent = new int[count * 2];
+        int[] transferSlot = new int[count];
+        for (int i = 0; i < count; i++) {
+            TransferDTO transfer = transfers.get(i);
+            int from = slotOf(slots, parent, transfer.getFrom());
+            int to = slotOf(slots, parent, transfer.getTo());
+            union(parent, from, to);
+            transferSlot[i] = from;
+        }
+
+        int[] groupOfRoot = new int[slots.size()];
+        int[] groupSizes = new int[slots.size()];
+        int groupCount = 0;
+        for (int i = 0; i < count; i++) {
+            int root = find(parent, transferSlot[i]);
+            if (groupSizes[root]++ == 0) {
+                groupOfRoot[root] = groupCount++;
+            }
+        }
+
+        List<int[]> groups = new ArrayList<>(groupCount);
+        int[] filled = new int[groupCount];
+        for (int group = 0; group < groupCount; group++) {
+            groups.add(null);
+        }
+        for (int i = 0; i < count; i++) {
+            int root = find(parent, transferSlot[i]);
+            int group = groupOfRoot[root];
+            int[] members = groups.get(group);
+            if (members == null) {
+                members = new int[groupSizes[root]];
+                groups.set(group, members);
+            }
+            members[filled[group]++] = i;
+        }
+        return groups;
+    }
+
+    private static int slotOf(Map<String, Integer> slots, int[] parent, String accountNumber) {
+        Integer slot = slots.get(accountNumber);
+        if (slot == null) {
+            slot = slots.size();
+            slots.put(accountNumber, slot);
+            parent[slot] = slot;
+        }
+        return slot;
+    }
+
+    private static int find(int[] parent, int slot) {
+        while (parent[slot] != slot) {
+            parent[slot] = parent[parent[slot]];
+            slot = parent[slot];
+        }
+        return slot;
+    }
+
+    private static void union(int[] parent, int first, int second) {
+        int firstRoot = find(parent, first);
+        int secondRoot = find(parent, second);
+        if (firstRoot != secondRoot) {
+            parent[secondRoot] = firstRoot;
+        }
+    }
+}
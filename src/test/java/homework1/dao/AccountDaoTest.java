@@ -0,0 +1,73 @@
+package homework1.dao;
+
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.NoopJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountDaoTest {
+
+    private AccountDao accountDao;
+
+    @BeforeEach
+    void setUp() {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        accountDao = new AccountDao(metrics, new AccountLocks(metrics), new NoopJournal(), new ReadLogSampler(1_000_000),
+                new AccountSnapshots(), new StoreVersion(), new TransactionHistory(256, 64, Duration.ofDays(90)), 16);
+    }
+
+    @Test
+    void readsAllShardsInAscendingIdOrder() {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            accounts.add(new Account(Currency.USD, null));
+        }
+        accountDao.saveAll(accounts);
+        accountDao.delete(accounts.get(10));
+
+        List<Account> all = accountDao.findAll();
+        assertThat(all).hasSize(4_999).extracting(Account::getId).isSorted();
+        assertThat(accountDao.lastId()).isEqualTo(accounts.get(4_999).getId());
+
+        Long afterId = accounts.get(4_000).getId();
+        Iterator<Account> page = accountDao.iterateAfter(afterId);
+        for (int i = 4_001; i < 5_000; i++) {
+            assertThat(page.next()).isSameAs(accounts.get(i));
+        }
+        assertThat(page.hasNext()).isFalse();
+        assertThat(accountDao.getById(accounts.get(20).getId())).isSameAs(accounts.get(20));
+        assertThatThrownBy(() -> accountDao.getById(accounts.get(10).getId()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void keepsIdsUniqueAcrossShards() {
+        Account first = new Account("first", Currency.USD, null);
+        first.setId(100L);
+        Account sameId = new Account("second", Currency.EUR, null);
+        sameId.setId(100L);
+        accountDao.saveAll(List.of(first, sameId));
+        assertThat(accountDao.findAll()).containsExactly(first);
+
+        Account restored = new Account("third", Currency.GBP, null);
+        restored.setId(100L);
+        accountDao.restore(restored);
+        assertThat(accountDao.findAll()).containsExactly(first);
+
+        // A deleted account's id is free again.
+        accountDao.delete(first);
+        accountDao.restore(restored);
+        assertThat(accountDao.getById(100L)).isSameAs(restored);
+    }
+}
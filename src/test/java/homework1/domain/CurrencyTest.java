@@ -0,0 +1,43 @@
+package homework1.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CurrencyTest {
+
+    @Test
+    void convertsAmountsWithinTheMinorUnit() {
+        assertThat(Currency.USD.toMinorUnits(new BigDecimal("12.34"))).isEqualTo(1234);
+        assertThat(Currency.USD.toMinorUnits(new BigDecimal("12.3"))).isEqualTo(1230);
+        assertThat(Currency.USD.toMinorUnits(new BigDecimal("7"))).isEqualTo(700);
+    }
+
+    @Test
+    void acceptsTrailingZerosBeyondTheMinorUnit() {
+        assertThat(Currency.EUR.toMinorUnits(new BigDecimal("1.2000"))).isEqualTo(120);
+    }
+
+    @Test
+    void rejectsAmountsFinerThanTheMinorUnit() {
+        assertThatThrownBy(() -> Currency.USD.toMinorUnits(new BigDecimal("1.005")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("more than 2 decimal places");
+    }
+
+    @Test
+    void rejectsAmountsThatOverflowMinorUnits() {
+        assertThatThrownBy(() -> Currency.USD.toMinorUnits(new BigDecimal("1e20")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("is not a valid usd amount");
+    }
+
+    @Test
+    void formatsMinorUnitsAtTheCurrencyScale() {
+        assertThat(Currency.UAH.fromMinorUnits(1005)).isEqualByComparingTo("10.05");
+        assertThat(Currency.UAH.fromMinorUnits(1005).scale()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,156 @@
+package homework1.persistence;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.CustomerDao;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.domain.Customer;
+import homework1.metrics.HotPathMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistenceManagerTest {
+
+    @TempDir
+    Path directory;
+
+    private Store store;
+
+    @AfterEach
+    void closeStore() throws IOException {
+        if (store != null) {
+            store.journal.close();
+        }
+    }
+
+    @Test
+    void replaysTheJournalWrittenAfterTheSnapshot() throws IOException {
+        store = new Store(directory);
+        Customer customer = store.customerDao.save(new Customer("Ann", "ann@example.com", 30));
+        Account kept = store.accountDao.save(new Account(Currency.USD, customer));
+        Account deletedLater = store.accountDao.save(new Account(Currency.EUR, customer));
+        store.changeBalance(kept, 1_000);
+
+        store.persistence.snapshot();
+
+        Account createdLater = store.accountDao.save(new Account(Currency.GBP, customer));
+        store.changeBalance(kept, 2_500);
+        store.changeBalance(createdLater, 700);
+        store.accountDao.deleteById(deletedLater.getId());
+        store.journal.close();
+
+        store = new Store(directory);
+        assertThat(store.persistence.hasRecoveredState()).isTrue();
+        Customer recovered = store.customerDao.getById(customer.getId());
+        assertThat(recovered.getName()).isEqualTo("Ann");
+        assertThat(store.accountDao.findAll()).extracting(Account::getNumber)
+                .containsExactly(kept.getNumber(), createdLater.getNumber());
+        assertThat(store.accountDao.findByNumber(kept.getNumber()).getBalanceMinorUnits()).isEqualTo(2_500);
+        assertThat(store.accountDao.findByNumber(createdLater.getNumber()).getBalanceMinorUnits()).isEqualTo(700);
+        assertThat(store.accountDao.findByNumber(createdLater.getNumber()).getCustomer()).isSameAs(recovered);
+        assertThat(recovered.getAccounts()).hasSize(2);
+    }
+
+    @Test
+    void keepsAnAccountJournaledWhileTheSnapshotRotates() throws Exception {
+        CountDownLatch journaled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Parks the creating thread after its record is appended but before the account is
+        // indexed, the window in which a rotation used to retire the record unseen.
+        FileJournal pausingJournal = new FileJournal(directory.toString(), true) {
+            @Override
+            public long accountSaved(Account account) {
+                long sequence = super.accountSaved(account);
+                journaled.countDown();
+                awaitUninterruptibly(release);
+                return sequence;
+            }
+        };
+        store = new Store(pausingJournal);
+        Account account = new Account(Currency.USD, null);
+        Thread creator = new Thread(() -> store.accountDao.save(account));
+        creator.start();
+        journaled.await();
+        Thread snapshot = new Thread(() -> {
+            try {
+                store.persistence.snapshot();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        snapshot.start();
+        snapshot.join(200);
+        release.countDown();
+        creator.join();
+        snapshot.join();
+        store.journal.close();
+
+        store = new Store(directory);
+        assertThat(store.accountDao.findAll()).extracting(Account::getNumber).containsExactly(account.getNumber());
+        assertThat(SnapshotFiles.list(directory)).hasSize(1);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void startsEmptyWithoutJournalOrSnapshot() throws IOException {
+        store = new Store(directory);
+        assertThat(store.persistence.hasRecoveredState()).isFalse();
+        assertThat(store.accountDao.findAll()).isEmpty();
+        assertThat(store.customerDao.findAll()).isEmpty();
+        assertThat(FileJournal.listSegments(directory)).hasSize(1);
+    }
+
+    // A store wired the way the application wires it, recovered from the directory.
+    private static final class Store {
+        final FileJournal journal;
+        final CustomerDao customerDao;
+        final AccountDao accountDao;
+        final PersistenceManager persistence;
+
+        Store(Path directory) throws IOException {
+            this(new FileJournal(directory.toString(), true));
+        }
+
+        Store(FileJournal journal) throws IOException {
+            this.journal = journal;
+            ReadLogSampler readLogSampler = new ReadLogSampler(1_000_000);
+            StoreVersion storeVersion = new StoreVersion();
+            customerDao = new CustomerDao(journal, readLogSampler, storeVersion);
+            HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+            accountDao = new AccountDao(metrics, new AccountLocks(metrics), journal, readLogSampler,
+                    new AccountSnapshots(), storeVersion, new TransactionHistory(256, 64, Duration.ofDays(90)), 16);
+            persistence = new PersistenceManager(journal, customerDao, accountDao);
+            persistence.recover();
+        }
+
+        // What a deposit does, minus the locking the service layer adds.
+        void changeBalance(Account account, long balanceMinorUnits) {
+            long previous = account.getBalanceMinorUnits();
+            account.setBalanceMinorUnits(balanceMinorUnits);
+            accountDao.balanceChanged(account, previous);
+            journal.awaitDurable(journal.balanceChanged(account));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package homework1.resource;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.CustomerDao;
+import homework1.dao.CustomerLocks;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.domain.Customer;
+import homework1.dto.CustomerDTO;
+import homework1.ledger.LedgerRing;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.NoopJournal;
+import homework1.service.DefaultAccountService;
+import homework1.service.DefaultCustomerService;
+import homework1.service.FxRates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerControllerTest {
+
+    private DefaultCustomerService customerService;
+    private DefaultAccountService accountService;
+    private LedgerRing ledger;
+    private CustomerController controller;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        NoopJournal journal = new NoopJournal();
+        ReadLogSampler readLogSampler = new ReadLogSampler(1_000_000);
+        StoreVersion storeVersion = new StoreVersion();
+        AccountLocks accountLocks = new AccountLocks(metrics);
+        AccountSnapshots snapshots = new AccountSnapshots();
+        TransactionHistory transactionHistory = new TransactionHistory(256, 64, Duration.ofDays(90));
+        CustomerDao customerDao = new CustomerDao(journal, readLogSampler, storeVersion);
+        AccountDao accountDao = new AccountDao(metrics, accountLocks, journal, readLogSampler, snapshots,
+                storeVersion, transactionHistory, 16);
+        customerService = new DefaultCustomerService(customerDao, accountDao, new CustomerLocks(), journal);
+        ledger = new LedgerRing(1 << 10, LedgerRing.Backpressure.DROP, event -> { }, metrics);
+        ledger.start();
+        accountService = new DefaultAccountService(accountDao, accountLocks, metrics, journal, ledger, snapshots,
+                new FxRates("fx-rates.csv"), transactionHistory, Runnable::run);
+        controller = new CustomerController(customerService, null, null);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ledger.stop();
+    }
+
+    @Test
+    void answersAStaleIfMatchWith412ButNotAfterADeposit() {
+        Customer customer = customerService.save(new Customer("Eve", "eve@example.com", 35));
+        customerService.createAccount(customer.getId(), Currency.USD, null);
+        Account account = customer.getAccounts().get(0);
+        String etag = ETags.customer(customer);
+
+        accountService.deposit(account.getNumber(), new BigDecimal("5.00"), null);
+        assertThat(ETags.customer(customer)).isNotEqualTo(etag);
+        ResponseEntity<?> renamed = controller.update(customer.getId(), new CustomerDTO("Eve Two", null, null), etag);
+        assertThat(renamed.getStatusCode().value()).isEqualTo(200);
+        assertThat(renamed.getHeaders().getETag()).isEqualTo(ETags.customer(customer));
+
+        ResponseEntity<?> stale = controller.update(customer.getId(), new CustomerDTO("Eve Three", null, null), etag);
+        assertThat(stale.getStatusCode().value()).isEqualTo(412);
+        assertThat(customer.getName()).isEqualTo("Eve Two");
+
+        String current = renamed.getHeaders().getETag();
+        assertThat(controller.update(customer.getId(), new CustomerDTO(null, null, 36), current).getStatusCode().value())
+                .isEqualTo(200);
+        assertThat(controller.update(customer.getId(), new CustomerDTO(null, null, 37), "*").getStatusCode().value())
+                .isEqualTo(200);
+        assertThat(controller.update(customer.getId(), new CustomerDTO(null, null, 38), "\"c" + customer.getId() + "x\"")
+                .getStatusCode().value()).isEqualTo(412);
+        assertThat(customer.getAge()).isEqualTo(37);
+    }
+}
@@ -0,0 +1,74 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyCacheTest {
+
+    private final IdempotencyCache cache = new IdempotencyCache(Duration.ofHours(1), DataSize.ofMegabytes(1));
+    private final ObjectWriter writer = new ObjectMapper().writer();
+
+    @Test
+    void replaysTheOriginalHeadersAndBody() {
+        AtomicInteger runs = new AtomicInteger();
+        Map<String, Object> account = new HashMap<>(Map.of("balance", 100));
+        ResponseEntity<?> original = cache.execute("key-1", "deposit a 1", writer, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.ok().eTag("\"a1.1-c0\"").location(URI.create("/accounts/a")).body(account);
+        });
+        account.put("balance", 250);
+
+        ResponseEntity<?> replayed = cache.execute("key-1", "deposit a 1", writer, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.ok("ran twice");
+        });
+
+        assertThat(runs).hasValue(1);
+        assertThat(replayed.getStatusCode().value()).isEqualTo(200);
+        assertThat(replayed.getHeaders().getETag()).isEqualTo("\"a1.1-c0\"").isEqualTo(original.getHeaders().getETag());
+        assertThat(replayed.getHeaders().getLocation()).isEqualTo(URI.create("/accounts/a"));
+        assertThat(replayed.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(replayed.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(original.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isNull();
+        assertThat(new String((byte[]) replayed.getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"balance\":100}");
+    }
+
+    @Test
+    void replaysAnErrorWithASingleContentType() {
+        ResponseEntity<?> original = cache.execute("key-2", "withdraw a 5", writer,
+                () -> ResponseEntity.badRequest().contentType(MediaType.APPLICATION_XML).body("Insufficient balance"));
+        ResponseEntity<?> replayed = cache.execute("key-2", "withdraw a 5", writer,
+                () -> ResponseEntity.ok("ran twice"));
+
+        assertThat(replayed.getStatusCode().value()).isEqualTo(400);
+        assertThat(replayed.getHeaders().get(HttpHeaders.CONTENT_TYPE)).hasSize(1);
+        assertThat(replayed.getHeaders().getContentType()).isEqualTo(original.getHeaders().getContentType());
+        assertThat(new String((byte[]) replayed.getBody(), StandardCharsets.UTF_8)).isEqualTo("Insufficient balance");
+    }
+
+    @Test
+    void refusesAKeyReusedForADifferentRequestOrStillRunning() {
+        ResponseEntity<?> nested = cache.execute("key-3", "deposit a 1", writer,
+                () -> cache.execute("key-3", "deposit a 1", writer, () -> ResponseEntity.ok("inner")));
+        assertThat(nested.getStatusCode().value()).isEqualTo(409);
+
+        ResponseEntity<?> reused = cache.execute("key-3", "deposit b 1", writer, () -> ResponseEntity.ok("other"));
+        assertThat(reused.getStatusCode().value()).isEqualTo(422);
+        assertThat(cache.isCompleted("key-3")).isTrue();
+        assertThat(cache.isCompleted("key-4")).isFalse();
+    }
+}
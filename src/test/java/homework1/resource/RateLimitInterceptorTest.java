@@ -0,0 +1,136 @@
+package homework1.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.domain.Customer;
+import homework1.metrics.HotPathMetrics;
+import homework1.service.AccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimitInterceptorTest {
+    // Slow enough that no permit is refilled while a test runs.
+    private static final double PER_SECOND = 0.001;
+
+    private AccountService accountService;
+    private IdempotencyCache idempotencyCache;
+
+    @BeforeEach
+    void setUp() {
+        accountService = mock(AccountService.class);
+        when(accountService.findByNumber(anyString())).thenThrow(new IllegalArgumentException("not found"));
+        idempotencyCache = new IdempotencyCache(Duration.ofHours(1), DataSize.ofMegabytes(1));
+    }
+
+    private RateLimits rateLimits(int accountBurst, int customerBurst) {
+        return new RateLimits(true, 64, PER_SECOND, accountBurst, PER_SECOND, customerBurst, accountService,
+                new HotPathMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static MockHttpServletRequest transfer(String from, String to) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/accounts/transfer/" + from + "/" + to);
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE,
+                Map.of("fromAccountNumber", from, "toAccountNumber", to));
+        return request;
+    }
+
+    private static MockHttpServletRequest deposit(String accountNumber) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/accounts/deposit/" + accountNumber);
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("accountNumber", accountNumber));
+        return request;
+    }
+
+    @Test
+    void refusedTransferChargesNeitherAccount() throws IOException {
+        RateLimits rateLimits = rateLimits(1, 10);
+        RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimits, idempotencyCache);
+        assertThat(interceptor.preHandle(deposit("to"), new MockHttpServletResponse(), null)).isTrue();
+
+        MockHttpServletResponse refused = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(transfer("from", "to"), refused, null)).isFalse();
+        assertThat(refused.getStatus()).isEqualTo(429);
+        assertThat(refused.getHeader(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(refused.getContentAsString()).isEqualTo("Too many requests for account to");
+
+        // The from account's only permit was handed back when the to account was refused.
+        assertThat(interceptor.preHandle(deposit("from"), new MockHttpServletResponse(), null)).isTrue();
+        assertThat(interceptor.preHandle(deposit("from"), new MockHttpServletResponse(), null)).isFalse();
+    }
+
+    @Test
+    void refusedByTheCustomerLimitHandsBackTheAccountPermits() {
+        Customer customer = new Customer("Ann", "ann@example.com", 30);
+        customer.setId(7L);
+        for (String accountNumber : List.of("first", "second", "third")) {
+            doReturn(new Account(accountNumber, Currency.USD, customer)).when(accountService).findByNumber(accountNumber);
+        }
+        RateLimits rateLimits = rateLimits(1, 2);
+        assertThat(rateLimits.admit(List.of("second"))).isNull();
+
+        assertThat(rateLimits.admit(List.of("first", "third")))
+                .extracting(RateLimits.Throttle::subject).isEqualTo("customer 7");
+        assertThat(rateLimits.admit(List.of("first"))).isNull();
+        assertThat(rateLimits.admit(List.of("third")))
+                .extracting(RateLimits.Throttle::subject).isEqualTo("customer 7");
+    }
+
+    @Test
+    void chargesABatchOnePermitPerTransferLeg() {
+        RateLimits rateLimits = rateLimits(3, 10);
+
+        assertThat(rateLimits.admit(List.of("a", "b", "a", "c"))).isNull();
+        assertThat(rateLimits.admit(List.of("b", "a", "a"))).extracting(RateLimits.Throttle::subject)
+                .isEqualTo("account a");
+        assertThat(rateLimits.admit(List.of("b", "b"))).isNull();
+        assertThat(rateLimits.admit(List.of("b"))).isNotNull();
+    }
+
+    @Test
+    void admitsABatchLargerThanTheBurstOnlyIntoAnIdleBucket() {
+        RateLimits rateLimits = rateLimits(2, 1_000);
+
+        assertThat(rateLimits.admit(Collections.nCopies(5, "a"))).isNull();
+        RateLimits.Throttle throttle = rateLimits.admit(List.of("a"));
+        assertThat(throttle).isNotNull();
+        // Five permits against a burst of two hold the bucket back for four more intervals.
+        assertThat(throttle.waitNanos()).isGreaterThan(3 * (long) (1_000_000_000L / PER_SECOND));
+    }
+
+    @Test
+    void letsARetryOfACompletedIdempotentRequestThrough() throws IOException {
+        RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimits(1, 10), idempotencyCache);
+        MockHttpServletRequest original = deposit("a");
+        original.addHeader(IdempotencyCache.HEADER, "key-1");
+        assertThat(interceptor.preHandle(original, new MockHttpServletResponse(), null)).isTrue();
+
+        MockHttpServletRequest inFlight = deposit("a");
+        inFlight.addHeader(IdempotencyCache.HEADER, "key-1");
+        assertThat(interceptor.preHandle(inFlight, new MockHttpServletResponse(), null)).isFalse();
+
+        idempotencyCache.execute("key-1", "deposit a 1", new ObjectMapper().writer(), () -> ResponseEntity.ok("done"));
+        MockHttpServletRequest retry = deposit("a");
+        retry.addHeader(IdempotencyCache.HEADER, "key-1");
+        assertThat(interceptor.preHandle(retry, new MockHttpServletResponse(), null)).isTrue();
+        assertThat(interceptor.preHandle(deposit("a"), new MockHttpServletResponse(), null)).isFalse();
+    }
+}
@@ -0,0 +1,121 @@
+package homework1.service;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.dto.CurrencyStatsDTO;
+import homework1.ledger.LedgerRing;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.NoopJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DefaultAccountServiceTest {
+
+    private AccountDao accountDao;
+    private TransactionHistory transactionHistory;
+    private LedgerRing ledger;
+    private DefaultAccountService accountService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        NoopJournal journal = new NoopJournal();
+        AccountLocks accountLocks = new AccountLocks(metrics);
+        AccountSnapshots snapshots = new AccountSnapshots();
+        transactionHistory = new TransactionHistory(256, 64, Duration.ofDays(90));
+        accountDao = new AccountDao(metrics, accountLocks, journal, new ReadLogSampler(1_000_000), snapshots,
+                new StoreVersion(), transactionHistory, 16);
+        ledger = new LedgerRing(1 << 10, LedgerRing.Backpressure.DROP, event -> { }, metrics);
+        ledger.start();
+        accountService = new DefaultAccountService(accountDao, accountLocks, metrics, journal, ledger, snapshots,
+                new FxRates("fx-rates.csv"), transactionHistory, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ledger.stop();
+    }
+
+    @Test
+    void rejectsABalanceChangeOfADeletedAccount() {
+        Account account = accountDao.save(new Account(Currency.USD, null));
+        accountDao.delete(account);
+
+        assertThatThrownBy(() -> accountService.deposit(account.getNumber(), BigDecimal.ONE, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not found");
+        assertThat(account.getBalanceMinorUnits()).isZero();
+    }
+
+    @Test
+    void keepsStatsAndHistoryExactWhenDeletesRaceDeposits() throws InterruptedException {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            accounts.add(accountDao.save(new Account(Currency.USD, null)));
+        }
+        Thread[] depositors = new Thread[4];
+        for (int t = 0; t < depositors.length; t++) {
+            depositors[t] = new Thread(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (Account account : accounts) {
+                        try {
+                            accountService.deposit(account.getNumber(), BigDecimal.ONE, null);
+                        } catch (IllegalArgumentException e) {
+                            // Deleted in the meantime.
+                        }
+                    }
+                }
+            });
+            depositors[t].start();
+        }
+        for (Account account : accounts) {
+            accountDao.delete(account);
+        }
+        for (Thread depositor : depositors) {
+            depositor.join();
+        }
+
+        CurrencyStatsDTO usd = accountService.stats().stream()
+                .filter(stats -> stats.getCurrency() == Currency.USD)
+                .findFirst().orElseThrow();
+        assertThat(usd.getAccounts()).isZero();
+        assertThat(usd.getTotal()).isEqualByComparingTo("0");
+        assertThat(usd.getMinBalance()).isNull();
+        assertThat(usd.getMaxBalance()).isNull();
+        for (Account account : accounts) {
+            assertThat(transactionHistory.range(account, Long.MIN_VALUE, Long.MAX_VALUE, 1)).isEmpty();
+        }
+    }
+
+    @Test
+    void transfersBetweenCurrenciesAtTheConfiguredRate() {
+        Account usd = accountDao.save(new Account(Currency.USD, null));
+        Account eur = accountDao.save(new Account(Currency.EUR, null));
+        accountService.deposit(usd.getNumber(), new BigDecimal("10.00"), null);
+
+        accountService.transfer(usd.getNumber(), eur.getNumber(), new BigDecimal("10.00"));
+
+        assertThat(usd.getBalanceMinorUnits()).isZero();
+        assertThat(eur.getBalanceMinorUnits()).isEqualTo(920);
+        assertThatThrownBy(() -> accountService.transfer(usd.getNumber(), eur.getNumber(), new BigDecimal("0.01")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Insufficient balance in the from account");
+    }
+}
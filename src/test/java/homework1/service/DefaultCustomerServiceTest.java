@@ -0,0 +1,161 @@
+package homework1.service;
+
+import homework1.dao.AccountDao;
+import homework1.dao.AccountLocks;
+import homework1.dao.AccountSnapshots;
+import homework1.dao.CustomerDao;
+import homework1.dao.CustomerLocks;
+import homework1.dao.ReadLogSampler;
+import homework1.dao.StoreVersion;
+import homework1.dao.TransactionHistory;
+import homework1.dao.VersionConflictException;
+import homework1.domain.Account;
+import homework1.domain.Currency;
+import homework1.domain.Customer;
+import homework1.dto.CustomerDTO;
+import homework1.metrics.HotPathMetrics;
+import homework1.persistence.NoopJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DefaultCustomerServiceTest {
+
+    private CustomerDao customerDao;
+    private AccountDao accountDao;
+    private DefaultCustomerService customerService;
+    private RecordingJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry());
+        journal = new RecordingJournal();
+        ReadLogSampler readLogSampler = new ReadLogSampler(1_000_000);
+        StoreVersion storeVersion = new StoreVersion();
+        customerDao = new CustomerDao(journal, readLogSampler, storeVersion);
+        accountDao = new AccountDao(metrics, new AccountLocks(metrics), journal, readLogSampler, new AccountSnapshots(),
+                storeVersion, new TransactionHistory(256, 64, Duration.ofDays(90)), 16);
+        customerService = new DefaultCustomerService(customerDao, accountDao, new CustomerLocks(), journal);
+    }
+
+    @Test
+    void deleteCascadesToTheCustomersAccounts() {
+        Customer customer = customerService.save(new Customer("Ann", "ann@example.com", 30));
+        customerService.createAccount(customer.getId(), Currency.USD, null);
+        customerService.createAccount(customer.getId(), Currency.EUR, null);
+
+        assertThat(customerService.deleteById(customer.getId())).isTrue();
+
+        assertThat(accountDao.findAll()).isEmpty();
+        assertThat(customerDao.findById(customer.getId())).isEmpty();
+        assertThatThrownBy(() -> customerService.createAccount(customer.getId(), Currency.USD, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void leavesNoOrphanAccountWhenCreateRacesDelete() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            Customer customer = customerService.save(new Customer("Bob " + round, "bob" + round + "@example.com", 40));
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] creators = new Thread[3];
+            for (int i = 0; i < creators.length; i++) {
+                creators[i] = new Thread(() -> {
+                    awaitUninterruptibly(start);
+                    for (int n = 0; n < 5; n++) {
+                        try {
+                            customerService.createAccount(customer.getId(), Currency.USD, null);
+                        } catch (IllegalArgumentException e) {
+                            return;
+                        }
+                    }
+                });
+                creators[i].start();
+            }
+            start.countDown();
+            customerService.deleteById(customer.getId());
+            for (Thread creator : creators) {
+                creator.join();
+            }
+        }
+
+        assertThat(customerDao.findAll()).isEmpty();
+        assertThat(accountDao.findAll()).isEmpty();
+    }
+
+    @Test
+    void doesNotJournalAnUpdateAfterTheDeleteItRaced() throws InterruptedException {
+        Customer customer = customerService.save(new Customer("Cid", "cid@example.com", 50));
+        CountDownLatch updating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Parks the update while it applies its changes, after the customer was found stored.
+        CustomerDTO changes = new CustomerDTO(null, null, null) {
+            @Override
+            public String getName() {
+                updating.countDown();
+                awaitUninterruptibly(release);
+                return "Cid Renamed";
+            }
+        };
+        Thread updater = new Thread(() -> customerService.update(customer.getId(), changes, null));
+        updater.start();
+        updating.await();
+        Thread deleter = new Thread(() -> customerService.deleteById(customer.getId()));
+        deleter.start();
+        deleter.join(200);
+        release.countDown();
+        updater.join();
+        deleter.join();
+
+        // Replay applies the records in order, so a save after the delete would bring the customer back.
+        assertThat(journal.customerRecords).containsExactly(
+                "saved " + customer.getId(), "saved " + customer.getId(), "deleted " + customer.getId());
+        assertThat(customerDao.findById(customer.getId())).isEmpty();
+    }
+
+    @Test
+    void rejectsAnUpdateAtAStaleVersion() {
+        Customer customer = customerService.save(new Customer("Dee", "dee@example.com", 60));
+        long version = customer.getFieldsVersion();
+
+        customerService.update(customer.getId(), new CustomerDTO("Dee Two", null, null), version);
+        assertThatThrownBy(() -> customerService.update(customer.getId(), new CustomerDTO("Dee Three", null, null), version))
+                .isInstanceOf(VersionConflictException.class);
+
+        assertThat(customer.getName()).isEqualTo("Dee Two");
+        assertThat(journal.customerRecords).containsExactly("saved " + customer.getId(), "saved " + customer.getId());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Keeps the order of the customer records, which is the order replay applies them in.
+    private static final class RecordingJournal extends NoopJournal {
+        private final List<String> customerRecords = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public long customerSaved(Customer customer) {
+            customerRecords.add("saved " + customer.getId());
+            return 0;
+        }
+
+        @Override
+        public long customerDeleted(Long customerId) {
+            customerRecords.add("deleted " + customerId);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package homework1.service;
+
+import homework1.domain.Currency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FxRatesTest {
+
+    @TempDir
+    Path directory;
+
+    private FxRates rates(String csv) throws IOException {
+        Path file = directory.resolve("fx-rates.csv");
+        Files.writeString(file, csv);
+        return new FxRates(file.toString());
+    }
+
+    @Test
+    void roundsHalfToEven() throws IOException {
+        FxRates fxRates = rates("usd,eur,0.125\n");
+        assertThat(fxRates.convert(1, Currency.USD, Currency.EUR)).isZero();
+        assertThat(fxRates.convert(4, Currency.USD, Currency.EUR)).isZero();
+        assertThat(fxRates.convert(12, Currency.USD, Currency.EUR)).isEqualTo(2);
+        assertThat(fxRates.convert(20, Currency.USD, Currency.EUR)).isEqualTo(2);
+        assertThat(fxRates.convert(28, Currency.USD, Currency.EUR)).isEqualTo(4);
+        assertThat(fxRates.convert(29, Currency.USD, Currency.EUR)).isEqualTo(4);
+    }
+
+    @Test
+    void matchesDecimalArithmeticForTheStoredFactor() throws IOException {
+        FxRates fxRates = rates("usd,uah,41.237519\n");
+        BigDecimal factor = new BigDecimal("41.237519");
+        SplittableRandom random = new SplittableRandom(17);
+        for (int i = 0; i < 10_000; i++) {
+            long minorUnits = random.nextLong(1, 200_000_000_000_000L);
+            long expected = factor.multiply(BigDecimal.valueOf(minorUnits))
+                    .setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+            assertThat(fxRates.convert(minorUnits, Currency.USD, Currency.UAH)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void derivesInverseAndCrossRates() throws IOException {
+        FxRates fxRates = rates("usd,eur,0.8\nusd,gbp,0.5\n");
+        assertThat(fxRates.convert(80, Currency.EUR, Currency.USD)).isEqualTo(100);
+        assertThat(fxRates.convert(80, Currency.EUR, Currency.GBP)).isEqualTo(50);
+        assertThat(fxRates.convert(1234, Currency.GBP, Currency.GBP)).isEqualTo(1234);
+    }
+
+    @Test
+    void rejectsMissingRatesNegativeAmountsAndOverflow() throws IOException {
+        FxRates fxRates = rates("usd,uah,41.20\n");
+        assertThatThrownBy(() -> fxRates.convert(100, Currency.USD, Currency.CHF))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No exchange rate from usd to chf");
+        assertThatThrownBy(() -> fxRates.convert(-1, Currency.USD, Currency.UAH))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> fxRates.convert(Long.MAX_VALUE / 2, Currency.USD, Currency.UAH))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Converted amount is out of range");
+    }
+
+    @Test
+    void keepsPreviousRatesWhenAReloadIsInvalid() throws IOException {
+        FxRates fxRates = rates("usd,eur,0.5\n");
+        Path file = directory.resolve("fx-rates.csv");
+        Files.writeString(file, "usd,eur,not-a-rate\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        fxRates.reloadIfChanged();
+        assertThat(fxRates.convert(100, Currency.USD, Currency.EUR)).isEqualTo(50);
+
+        Files.writeString(file, "usd,eur,0.25\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 120_000));
+        fxRates.reloadIfChanged();
+        assertThat(fxRates.convert(100, Currency.USD, Currency.EUR)).isEqualTo(25);
+    }
+}